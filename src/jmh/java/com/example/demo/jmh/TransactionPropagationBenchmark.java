@@ -0,0 +1,114 @@
+package com.example.demo.jmh;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+/**
+ * Cost of each propagation mode exercised by TransactionPropagationTest, plus the suspend / resume
+ * of a REQUIRES_NEW or NOT_SUPPORTED call nested in a running transaction, against an empty
+ * REQUIRED transaction as baseline.
+ *
+ * Run with: mvn -Pjmh verify (results in target/jmh/jmh-result.json)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionPropagationBenchmark {
+
+    private final AtomicLong names = new AtomicLong();
+
+    private AnnotationConfigApplicationContext context;
+    private ItemRepository itemRepository;
+    private LogRepository logRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(SpringDataConfiguration.class);
+        itemRepository = context.getBean(ItemRepository.class);
+        logRepository = context.getBean(LogRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void emptyRequired() {
+        transactionTemplate.executeWithoutResult(status -> { });
+    }
+
+    // REQUIRED, with a REQUIRES_NEW log and a MANDATORY duplicate check inside
+    @Benchmark
+    public void addItem() {
+        itemRepository.addItem("Item" + names.incrementAndGet(), LocalDate.now());
+    }
+
+    @Benchmark
+    public void addItemNoRollback() {
+        itemRepository.addItemNoRollback("Item" + names.incrementAndGet(), LocalDate.now());
+    }
+
+    // REQUIRES_NEW with no transaction to suspend
+    @Benchmark
+    public void log() {
+        logRepository.log("benchmark");
+    }
+
+    // REQUIRES_NEW suspending and resuming a running transaction
+    @Benchmark
+    public void logNested() {
+        transactionTemplate.executeWithoutResult(status -> logRepository.log("benchmark"));
+    }
+
+    @Benchmark
+    public void addSeparateLogsSupports() {
+        try {
+            logRepository.addSeparateLogsSupports();
+        } catch (RuntimeException expected) {
+            // both methods always throw after their first save
+        }
+    }
+
+    @Benchmark
+    public void addSeparateLogsNotSupported() {
+        try {
+            logRepository.addSeparateLogsNotSupported();
+        } catch (RuntimeException expected) {
+        }
+    }
+
+    // REQUIRED addLogs() suspending itself around NOT_SUPPORTED addSeparateLogsNotSupported()
+    @Benchmark
+    public void addSeparateLogsNotSupportedNested() {
+        try {
+            itemRepository.addLogs();
+        } catch (RuntimeException expected) {
+        }
+    }
+}
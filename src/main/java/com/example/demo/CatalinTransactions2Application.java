@@ -1,7 +1,28 @@
 package com.example.demo;
 
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+
+import com.example.demo.audit.LogPartitionManager;
+import com.example.demo.audit.LogTemplates;
+import com.example.demo.models.ImportCheckpoint;
+import com.example.demo.models.Item;
+import com.example.demo.models.Log;
+import com.example.demo.models.LogTemplate;
+import com.example.demo.savepoints.SavepointHibernateJpaDialect;
+
+import jakarta.persistence.EntityManagerFactory;
 
 @SpringBootApplication
 public class CatalinTransactions2Application {
@@ -10,4 +31,65 @@ public class CatalinTransactions2Application {
 		SpringApplication.run(CatalinTransactions2Application.class, args);
 	}
 
+	/**
+	 * The entities, listed so that Boot does not scan the packages for them on every start. The one list of
+	 * them, the persistence unit of the tests takes it from here too.
+	 */
+	@Bean
+	public static PersistenceManagedTypes persistenceManagedTypes() {
+		return PersistenceManagedTypes.of(Item.class.getName(), Log.class.getName(), LogTemplate.class.getName(),
+				ImportCheckpoint.class.getName());
+	}
+
+	/**
+	 * NESTED propagation (ItemRepository.addItemNested()) as JDBC savepoints, as in SpringDataConfiguration.
+	 */
+	@Bean
+	public TransactionManagerCustomizer<JpaTransactionManager> nestedTransactions() {
+		return transactionManager -> transactionManager.setNestedTransactionAllowed(true);
+	}
+
+	// Boot has no property for the JpaDialect
+	@Bean
+	public static BeanPostProcessor savepointJpaDialect() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof LocalContainerEntityManagerFactoryBean entityManagerFactory) {
+					entityManagerFactory.setJpaDialect(new SavepointHibernateJpaDialect());
+				}
+				return bean;
+			}
+		};
+	}
+
+	/**
+	 * The log table of the migrated schema (the production profile), as in SpringDataConfiguration: kept
+	 * partitioned by month on PostgreSQL, with the partitions maintained every day, and log_template checked
+	 * against AuditEvent. Both depend on the EntityManagerFactory, which Boot starts after Flyway has
+	 * migrated the schema.
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty(name = "spring.flyway.enabled", havingValue = "true")
+	static class LogTableConfiguration {
+
+		@Bean
+		public LogPartitionManager logPartitionManager(DataSource dataSource, EntityManagerFactory emf,
+				@Value("${log.partitioning:true}") boolean partitioning,
+				@Value("${log.partitions-ahead:3}") int partitionsAhead,
+				@Value("${log.retention-months:0}") int retentionMonths) {
+			LogPartitionManager logPartitionManager = new LogPartitionManager(dataSource, partitionsAhead, retentionMonths);
+			logPartitionManager.setPartitioning(partitioning);
+			return logPartitionManager;
+		}
+
+		// the templates come from the migrations, a missing one fails the start
+		@Bean
+		public LogTemplates logTemplates(DataSource dataSource, EntityManagerFactory emf) {
+			LogTemplates logTemplates = new LogTemplates(dataSource);
+			logTemplates.setValidateOnly(true);
+			return logTemplates;
+		}
+	}
+
 }
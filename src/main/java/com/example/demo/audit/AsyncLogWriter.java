@@ -0,0 +1,202 @@
+package com.example.demo.audit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.batching.BatchingWriter;
+import com.example.demo.models.Log;
+import com.example.demo.repositories.LogRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Opt-in replacement for the REQUIRES_NEW transaction of LogRepository.log(). Declaring this bean makes
+ * LogRepository.audit() put the messages on a bounded queue instead, and a background thread writes them
+ * in batched transactions of up to batchSize logs, or whatever arrived within flushInterval.
+ *
+ * Like with REQUIRES_NEW, a queued log does not depend on the caller's transaction, so it survives a
+ * business rollback. The difference is that the caller no longer suspends its transaction nor takes a
+ * second connection from the pool. Whatever is still queued is written when the bean is destroyed; the
+ * queue, the writer thread and the shutdown come from BatchingWriter.
+ *
+ * A batch that fails to commit is tried again, up to maxAttempts times with a backoff doubling from
+ * retryBackoff, while the queue keeps filling behind it. If it still fails its logs are counted as failed
+ * and reported through the logger. bindTo() publishes the queue depth, the flush latency and the counters as
+ * meters.
+ *
+ * @author peter
+ *
+ */
+public class AsyncLogWriter extends BatchingWriter<Log> implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncLogWriter.class);
+
+    private final LogRepository logRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    private int maxAttempts = 3;
+    private Duration retryBackoff = Duration.ofMillis(100);
+
+    public AsyncLogWriter(LogRepository logRepository, PlatformTransactionManager transactionManager,
+                          int capacity, int batchSize, Duration flushInterval, BackpressurePolicy backpressurePolicy) {
+        super("async-log-writer", capacity, batchSize, flushInterval, backpressurePolicy);
+        this.logRepository = logRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Attempts at writing a batch before its logs are given up, and the wait after the first failed one,
+     * doubled after every further failure.
+     */
+    public void setRetry(int maxAttempts, Duration retryBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("audit.queue.depth", this, AsyncLogWriter::getQueueDepth)
+                .description("Audit logs waiting to be written")
+                .register(registry);
+        FunctionTimer.builder("audit.flush", this, AsyncLogWriter::getFlushes,
+                        writer -> writer.getTotalFlushLatency().toNanos(), TimeUnit.NANOSECONDS)
+                .description("Batches of audit logs written, retries included")
+                .register(registry);
+        Gauge.builder("audit.flush.max", this, writer -> writer.getMaxFlushLatency().toNanos() / 1e9)
+                .description("Longest write of a batch of audit logs since the start")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("audit.logs", written, AtomicLong::get)
+                .description("Audit logs by what became of them")
+                .tag("outcome", "written")
+                .register(registry);
+        FunctionCounter.builder("audit.logs", dropped, AtomicLong::get)
+                .description("Audit logs by what became of them")
+                .tag("outcome", "dropped")
+                .register(registry);
+        FunctionCounter.builder("audit.logs", failed, AtomicLong::get)
+                .description("Audit logs by what became of them")
+                .tag("outcome", "failed")
+                .register(registry);
+        FunctionCounter.builder("audit.flush.retries", retries, AtomicLong::get)
+                .description("Batches of audit logs written again after a failure")
+                .register(registry);
+    }
+
+    /**
+     * Queues the message, applying the backpressure policy when the queue is full. Once the writer is
+     * shutting down messages are written right away, so none is lost.
+     */
+    public void log(String message) {
+        log(AuditEvent.TEXT, message);
+    }
+
+    public void log(AuditEvent event, Object... parameters) {
+        Log log = new Log(event, parameters);
+        if (!enqueue(log)) {
+            writeNow(log);
+        }
+    }
+
+    @Override
+    protected void dropped(Log log) {
+        dropped.incrementAndGet();
+    }
+
+    private void writeNow(Log log) {
+        // REQUIRES_NEW, as LogRepository.log()
+        transactionTemplate.executeWithoutResult(status -> logRepository.save(log));
+        written.incrementAndGet();
+    }
+
+    @Override
+    protected void write(List<Log> batch) {
+        long backoff = retryBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            // the rolled back attempt gave the logs their ids: saved again they would be merged, with a select
+            // each, so a retry persists copies
+            List<Log> logs = attempt == 1 ? batch : copies(batch);
+            try {
+                transactionTemplate.executeWithoutResult(status -> logRepository.saveAll(logs));
+                written.addAndGet(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == maxAttempts || !backOff(backoff)) {
+                    failed.addAndGet(batch.size());
+                    logger.error("Could not write {} audit logs after {} attempts", batch.size(), attempt, e);
+                    return;
+                }
+                logger.warn("Could not write {} audit logs, trying again in {} ms: {}", batch.size(), backoff, e.toString());
+                retries.incrementAndGet();
+                backoff *= 2;
+            }
+        }
+    }
+
+    private static List<Log> copies(List<Log> logs) {
+        List<Log> copies = new ArrayList<>(logs.size());
+        for (Log log : logs) {
+            Log copy = new Log();
+            copy.setEvent(log.getEvent());
+            copy.setParameters(log.getParameters());
+            copy.setLegacyMessage(log.getLegacyMessage());
+            copy.setDate(log.getDate());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Returns false if the thread was interrupted while waiting.
+     */
+    private static boolean backOff(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Failed attempts at writing a batch that were followed by another one.
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+}
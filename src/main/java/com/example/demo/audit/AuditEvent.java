@@ -0,0 +1,106 @@
+package com.example.demo.audit;
+
+/**
+ * The kinds of audit log. A Log stores the code of its event and only the parameters of the message,
+ * not the whole text: the template is the same for every log of the event, and is kept once, here and in
+ * the log_template table. getMessage() puts the two back together.
+ *
+ * The codes are stored, never change or reuse one; a new event gets a new code, and a migration adding
+ * its row to log_template.
+ *
+ * @author peter
+ *
+ */
+public enum AuditEvent {
+
+    /** A free-text message, stored whole as the only parameter. */
+    TEXT(0, "{0}"),
+    ADDING_ITEM(1, "adding item with name {0}"),
+    ADDING_ITEM_NO_ROLLBACK(2, "adding log in method with no rollback for item {0}"),
+    ADDING_ITEM_BATCH(3, "adding batch of {0} items starting with name {1}");
+
+    /**
+     * Separates the parameters in Log.parameters. The last parameter may contain it, it is never split.
+     */
+    public static final char SEPARATOR = '\u001F';
+
+    private static final AuditEvent[] BY_CODE = new AuditEvent[values().length];
+
+    static {
+        for (AuditEvent event : values()) {
+            BY_CODE[event.code] = event;
+        }
+    }
+
+    private final short code;
+    private final String template;
+    private final int arity;
+
+    AuditEvent(int code, String template) {
+        this.code = (short) code;
+        this.template = template;
+        int arity = 0;
+        while (template.contains("{" + arity + "}")) {
+            arity++;
+        }
+        this.arity = arity;
+    }
+
+    public static AuditEvent of(short code) {
+        AuditEvent event = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (event == null) {
+            throw new IllegalArgumentException("Unknown audit event code " + code);
+        }
+        return event;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * The parameters as stored in Log.parameters. A null TEXT message stays null; in a template a null
+     * parameter reads "null", as it did when the message was concatenated.
+     */
+    public String join(Object... parameters) {
+        if (parameters.length != arity) {
+            throw new IllegalArgumentException(this + " takes " + arity + " parameters, got " + parameters.length);
+        }
+        if (this == TEXT) {
+            return parameters[0] == null ? null : parameters[0].toString();
+        }
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                joined.append(SEPARATOR);
+            }
+            joined.append(parameters[i]);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * The message as it was written before the logs were stored as events.
+     */
+    public String render(String parameters) {
+        if (parameters == null) {
+            return null;
+        }
+        String[] values = parameters.split(String.valueOf(SEPARATOR), arity);
+        StringBuilder message = new StringBuilder(template.length() + parameters.length());
+        int from = 0;
+        for (int i = 0; i < template.length(); i++) {
+            if (template.charAt(i) == '{' && i + 2 < template.length() && template.charAt(i + 2) == '}') {
+                int index = template.charAt(i + 1) - '0';
+                message.append(template, from, i).append(index < values.length ? values[index] : "");
+                from = i + 3;
+                i += 2;
+            }
+        }
+        return message.append(template, from, template.length()).toString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.audit;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores an AuditEvent as its code, a smallint, rather than its name or its position in the enum.
+ *
+ * @author peter
+ *
+ */
+@Converter
+public class AuditEventConverter implements AttributeConverter<AuditEvent, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(AuditEvent event) {
+        return event == null ? null : event.getCode();
+    }
+
+    @Override
+    public AuditEvent convertToEntityAttribute(Short code) {
+        return code == null ? null : AuditEvent.of(code);
+    }
+}
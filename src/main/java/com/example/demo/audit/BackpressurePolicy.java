@@ -0,0 +1,19 @@
+package com.example.demo.audit;
+
+/**
+ * What AsyncLogWriter does with a message, and ItemStagingBuffer with an item, when the queue is full.
+ *
+ * @author peter
+ *
+ */
+public enum BackpressurePolicy {
+
+	/** Wait until the writer makes room in the queue. */
+	BLOCK,
+
+	/** Throw the message away and count it as dropped. A dropped item fails its future instead. */
+	DROP,
+
+	/** Write in the calling thread, in a REQUIRES_NEW transaction of its own as LogRepository.log() does. */
+	CALLER_RUNS
+}
@@ -0,0 +1,263 @@
+package com.example.demo.audit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the Log table partitioned by month of Log.date, so that a date range query only scans the
+ * partitions of that range, and retention drops whole partitions instead of deleting row by row.
+ *
+ * On start the table created by Hibernate is turned into a partitioned one (primary key (id, date), as
+ * PostgreSQL wants the partition key in it) with a default partition for the rows outside every month
+ * partition. Then, and every maintenanceInterval, the partitions of the current month and the next
+ * monthsAhead are created, and those entirely older than the retention are dropped. The default partition
+ * is trimmed with a DELETE, it only holds rows written before their month partition existed; those rows are
+ * moved into the partition when it is created.
+ *
+ * A failed maintenance run is logged and counted (getFailures()), and the next one is tried at the next
+ * interval. getLastSuccess() tells when a run last went through.
+ *
+ * On other databases (the H2 of the tests and benchmarks), or with setPartitioning(false), the table is
+ * left as it is and retention falls back to a DELETE.
+ *
+ * @author peter
+ *
+ */
+public class LogPartitionManager implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogPartitionManager.class);
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("log_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    private boolean partitioning = true;
+    private Duration maintenanceInterval = Duration.ofDays(1);
+    private boolean partitioned;
+    private ScheduledExecutorService scheduler;
+    private final AtomicLong failures = new AtomicLong();
+    private volatile Instant lastSuccess;
+
+    /**
+     * @param retentionMonths months of logs kept besides the current one, 0 keeps everything
+     */
+    public LogPartitionManager(DataSource dataSource, int monthsAhead, int retentionMonths) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    public void setPartitioning(boolean partitioning) {
+        this.partitioning = partitioning;
+    }
+
+    /**
+     * How often the upcoming partitions are created and the expired ones dropped, null to only do it on start.
+     */
+    public void setMaintenanceInterval(Duration maintenanceInterval) {
+        this.maintenanceInterval = maintenanceInterval;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        partitioned = partitioning && isPostgreSQL() && (isTablePartitioned() || partition());
+        maintain();
+        if (maintenanceInterval != null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "log-partition-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = maintenanceInterval.toMillis();
+            scheduler.scheduleAtFixedRate(this::scheduledMaintenance, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A task that throws is never run again by the scheduler, so a failure is only logged and counted.
+     */
+    private void scheduledMaintenance() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            logger.error("Log partition maintenance failed, trying again in {}", maintenanceInterval, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void maintain() {
+        YearMonth now = YearMonth.now();
+        createPartitions(now, now.plusMonths(monthsAhead));
+        if (retentionMonths > 0) {
+            dropPartitionsBefore(now.minusMonths(retentionMonths).atDay(1));
+        }
+        lastSuccess = Instant.now();
+    }
+
+    /**
+     * Scheduled maintenance runs that failed since the start.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * When maintain() last completed, null if it never did.
+     */
+    public Instant getLastSuccess() {
+        return lastSuccess;
+    }
+
+    /**
+     * Creates the missing month partitions from the month of first to the month of last, both included.
+     * Rows of those months in the default partition are moved into the new partition.
+     *
+     * @return the partitions created
+     */
+    public int createPartitions(YearMonth first, YearMonth last) {
+        if (!partitioned) {
+            return 0;
+        }
+        List<String> existing = partitions();
+        int created = 0;
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            String name = partitionName(month);
+            if (!existing.contains(name)) {
+                createPartition(name, month.atDay(1), month.plusMonths(1).atDay(1));
+                created++;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * PostgreSQL refuses a new partition while the default one holds rows of its range. Those are moved in
+     * one transaction: the default partition is detached, the rows copied to the new partition and deleted,
+     * and the default partition attached again. The log table is locked for writes until it commits.
+     */
+    private void createPartition(String name, LocalDate from, LocalDate to) {
+        String create = "create table " + name + " partition of log for values from ('" + from + "') to ('" + to + "')";
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from log_default where date >= ? and date < ?)", Boolean.class, from, to))) {
+            jdbcTemplate.execute(create);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("alter table log detach partition log_default");
+            jdbcTemplate.execute(create);
+            jdbcTemplate.update("insert into " + name + " select * from log_default where date >= ? and date < ?", from, to);
+            jdbcTemplate.update("delete from log_default where date >= ? and date < ?", from, to);
+            jdbcTemplate.execute("alter table log attach partition log_default default");
+        });
+    }
+
+    /**
+     * Removes the logs dated before cutoff: the month partitions that end on or before it are dropped, and
+     * the older rows of the partly expired month and of the default partition are deleted.
+     *
+     * @return the partitions dropped
+     */
+    public int dropPartitionsBefore(LocalDate cutoff) {
+        if (!partitioned) {
+            jdbcTemplate.update("delete from log where date < ?", cutoff);
+            return 0;
+        }
+        int dropped = 0;
+        for (String name : partitions()) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (!month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                jdbcTemplate.execute("drop table " + name);
+                dropped++;
+            } else if (month.atDay(1).isBefore(cutoff)) {
+                jdbcTemplate.update("delete from " + name + " where date < ?", cutoff);
+            }
+        }
+        jdbcTemplate.update("delete from log_default where date < ?", cutoff);
+        return dropped;
+    }
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    private boolean isTablePartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from pg_partitioned_table p join pg_class c on c.oid = p.partrelid "
+                        + "where c.relname = 'log' and pg_table_is_visible(c.oid))", Boolean.class));
+    }
+
+    /**
+     * The month partitions of the table, oldest first, without the default one.
+     */
+    public List<String> partitions() {
+        return jdbcTemplate.queryForList(
+                "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+                        + "join pg_class p on p.oid = i.inhparent "
+                        + "where p.relname = 'log' and pg_table_is_visible(p.oid) and c.relname <> 'log_default' "
+                        + "order by c.relname", String.class);
+    }
+
+    static String partitionName(YearMonth month) {
+        return "log_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    private boolean partition() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("alter table log rename to log_unpartitioned");
+            jdbcTemplate.execute("alter table log_unpartitioned rename constraint log_pkey to log_unpartitioned_pkey");
+            jdbcTemplate.execute("alter index if exists log_date_idx rename to log_unpartitioned_date_idx");
+            jdbcTemplate.execute("create table log (like log_unpartitioned including defaults) partition by range (date)");
+            jdbcTemplate.execute("alter table log add constraint log_pkey primary key (id, date)");
+            jdbcTemplate.execute("create index log_date_idx on log (date)");
+            jdbcTemplate.execute("create table log_default partition of log default");
+            jdbcTemplate.execute("insert into log select * from log_unpartitioned");
+            jdbcTemplate.execute("drop table log_unpartitioned");
+        });
+        return true;
+    }
+
+    private boolean isPostgreSQL() throws SQLException {
+        try (Connection connection = jdbcTemplate.getDataSource().getConnection()) {
+            return "PostgreSQL".equals(JdbcUtils.commonDatabaseName(connection.getMetaData().getDatabaseProductName()));
+        }
+    }
+}
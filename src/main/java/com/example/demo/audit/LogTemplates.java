@@ -0,0 +1,55 @@
+package com.example.demo.audit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Keeps the log_template table in step with AuditEvent on start. When Hibernate creates the schema the
+ * missing templates are inserted and the changed ones updated; when the schema comes from the migrations
+ * (setValidateOnly(true)) the table is only compared, and a template the migrations forgot fails the start,
+ * as Hibernate's validate does for a missing column.
+ *
+ * @author peter
+ *
+ */
+public class LogTemplates implements InitializingBean {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private boolean validateOnly;
+
+    public LogTemplates(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public void setValidateOnly(boolean validateOnly) {
+        this.validateOnly = validateOnly;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Map<Short, String> stored = new HashMap<>();
+        jdbcTemplate.query("select id, template from log_template",
+                row -> { stored.put(row.getShort("id"), row.getString("template")); });
+        for (AuditEvent event : AuditEvent.values()) {
+            String template = stored.get(event.getCode());
+            if (event.getTemplate().equals(template)) {
+                continue;
+            }
+            if (validateOnly) {
+                throw new IllegalStateException("log_template has " + template + " for " + event
+                        + ", expected " + event.getTemplate());
+            }
+            if (template == null) {
+                jdbcTemplate.update("insert into log_template (id, template) values (?, ?)", event.getCode(), event.getTemplate());
+            } else {
+                jdbcTemplate.update("update log_template set template = ? where id = ?", event.getTemplate(), event.getCode());
+            }
+        }
+    }
+}
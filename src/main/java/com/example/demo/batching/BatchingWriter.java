@@ -0,0 +1,227 @@
+package com.example.demo.batching;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.example.demo.audit.BackpressurePolicy;
+
+/**
+ * A bounded queue drained by a background thread in batches of up to batchSize elements, or whatever arrived
+ * within flushInterval, each handed to write(). The base of AsyncLogWriter and ItemStagingBuffer.
+ *
+ * enqueue() tells the caller when it has to write the element itself: once the writer is closed, with the
+ * CALLER_RUNS policy on a full queue, or when the writer thread dies, the writer starts closing or the caller
+ * is interrupted while waiting for room. Queuing and closing are
+ * atomic with each other, so an element is either queued before destroy() takes the final drain or handed
+ * back to its caller, never left behind in the queue.
+ *
+ * @author peter
+ *
+ * @param <T> the queued elements
+ */
+public abstract class BatchingWriter<T> implements InitializingBean, DisposableBean {
+
+    // how often a caller blocked on a full queue checks that the writer is still there to make room
+    private static final long BLOCK_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final BlockingQueue<T> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BackpressurePolicy backpressurePolicy;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    private ThreadFactory threadFactory;
+
+    private volatile boolean running;
+    // enqueue() queues under the read lock and destroy() closes under the write lock
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+    // set by destroy() before it waits for the write lock, so that a caller blocked under the read lock gives up
+    private volatile boolean closing;
+    private volatile Thread writer;
+
+    protected BatchingWriter(String threadName, int capacity, int batchSize, Duration flushInterval,
+                             BackpressurePolicy backpressurePolicy) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.backpressurePolicy = backpressurePolicy;
+        this.threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Where the writer thread comes from, a daemon platform thread by default. On Java 21 pass
+     * new VirtualThreadTaskExecutor(name).getVirtualThreadFactory() so a flush blocked on JDBC does not
+     * hold an OS thread.
+     */
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        running = true;
+        writer = threadFactory.newThread(this::run);
+        writer.start();
+    }
+
+    /**
+     * Writes a batch, on the writer thread, or on the thread of destroy() for the last one.
+     */
+    protected abstract void write(List<T> batch);
+
+    /**
+     * Called for an element the DROP policy turned away from a full queue.
+     */
+    protected abstract void dropped(T element);
+
+    /**
+     * Queues the element, applying the backpressure policy when the queue is full. Returns false when the
+     * caller has to write it itself.
+     */
+    protected boolean enqueue(T element) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (queue.offer(element)) {
+                return true;
+            }
+            return switch (backpressurePolicy) {
+                case BLOCK -> put(element);
+                case DROP -> {
+                    dropped(element);
+                    yield true;
+                }
+                case CALLER_RUNS -> false;
+            };
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for room while holding the read lock, so it gives up as soon as destroy() wants the write lock,
+     * or the writer thread has died and nothing will ever drain the queue.
+     */
+    private boolean put(T element) {
+        long timeout = Math.min(flushIntervalNanos, BLOCK_CHECK_NANOS);
+        try {
+            while (!closing && (writer == null || writer.isAlive())) {
+                if (queue.offer(element, timeout, TimeUnit.NANOSECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        write(batch);
+        long elapsed = System.nanoTime() - start;
+        flushes.incrementAndGet();
+        flushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    /**
+     * Stops queuing and writes whatever is still queued before returning.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        closing = true;
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        running = false;
+        if (writer != null) {
+            writer.join();
+        }
+        List<T> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        flush(rest);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    /**
+     * Time spent in write() over every flush.
+     */
+    public Duration getTotalFlushLatency() {
+        return Duration.ofNanos(flushNanos.get());
+    }
+
+    public Duration getAverageFlushLatency() {
+        long count = flushes.get();
+        return Duration.ofNanos(count == 0 ? 0 : flushNanos.get() / count);
+    }
+
+    public Duration getMaxFlushLatency() {
+        return Duration.ofNanos(maxFlushNanos.get());
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.demo.export;
+
+/**
+ * Output of ItemExporter.
+ *
+ * @author peter
+ *
+ */
+public enum ExportFormat {
+
+	/** A header line and one RFC 4180 line per item, fields quoted only when they need it. */
+	CSV,
+
+	/** A JSON array with one object per item. */
+	JSON
+}
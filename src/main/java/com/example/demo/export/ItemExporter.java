@@ -0,0 +1,106 @@
+package com.example.demo.export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.stream.Stream;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.projections.ItemSummary;
+import com.example.demo.repositories.ItemRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes every item to a Writer as CSV or JSON, in memory that does not depend on the number of items: the
+ * items are read as ItemSummary values over a database cursor in one read-only transaction, and each one is
+ * written as soon as it is read. Nothing is kept in the persistence context, so unlike
+ * LogRepository.streamLogs() there is nothing to clear on the way.
+ *
+ * The writer is not closed, and only flushed at the end; give it a buffer of its own.
+ *
+ * @author peter
+ *
+ */
+public class ItemExporter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ItemExporter(ItemRepository itemRepository, PlatformTransactionManager transactionManager) {
+        this.itemRepository = itemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Returns how many items were written.
+     */
+    public long export(Writer out, ExportFormat format) {
+        Long count = transactionTemplate.execute(status -> {
+            try (Stream<ItemSummary> items = itemRepository.streamSummaries()) {
+                return format == ExportFormat.CSV ? writeCsv(items, out) : writeJson(items, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return count;
+    }
+
+    private static long writeCsv(Stream<ItemSummary> items, Writer out) throws IOException {
+        out.write("name,creationDate,buyNowPrice\r\n");
+        long count = 0;
+        for (ItemSummary item : (Iterable<ItemSummary>) items::iterator) {
+            writeCsvField(out, item.name());
+            out.write(',');
+            if (item.creationDate() != null) {
+                out.write(item.creationDate().toString());
+            }
+            out.write(',');
+            if (item.buyNowPrice() != null) {
+                out.write(item.buyNowPrice().toPlainString());
+            }
+            out.write("\r\n");
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private static long writeJson(Stream<ItemSummary> items, Writer out) throws IOException {
+        long count = 0;
+        // the generator must not close the caller's writer
+        try (JsonGenerator json = JSON.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            json.writeStartArray();
+            for (ItemSummary item : (Iterable<ItemSummary>) items::iterator) {
+                json.writeStartObject();
+                json.writeStringField("name", item.name());
+                json.writeStringField("creationDate", item.creationDate() == null ? null : item.creationDate().toString());
+                if (item.buyNowPrice() == null) {
+                    json.writeNullField("buyNowPrice");
+                } else {
+                    json.writeNumberField("buyNowPrice", item.buyNowPrice());
+                }
+                json.writeEndObject();
+                count++;
+            }
+            json.writeEndArray();
+        }
+        out.flush();
+        return count;
+    }
+}
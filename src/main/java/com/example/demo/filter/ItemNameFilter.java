@@ -0,0 +1,239 @@
+package com.example.demo.filter;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Opt-in prefilter of the names in the Item table. Declaring this bean makes ItemRepository.checkNameDuplicate()
+ * and addItems() skip the database probe for the names the filter has definitely never seen, which are most of
+ * them when items are mostly new. A name the filter might have seen goes on to the usual query.
+ *
+ * The filter is built from the table on start, sized for twice its rows (and at least minimumCapacity), and
+ * the repository adds each name as it writes it, before the commit. A rebuild() keeps the names of the
+ * transactions still open, which its query of the table cannot see yet. Names of rolled back or deleted
+ * items stay in it as extra false positives until the next rebuild().
+ *
+ * Only the names written through the repositories of this JVM are added. A name inserted by some other
+ * client, another instance of the application or ReactiveItemRepository, is missed until the next
+ * rebuild(): a new item of that name fails on the unique index of Item.name instead of the duplicate check,
+ * so addItem() still throws a DuplicateItemNameException, but addItems() fails the whole batch whatever its
+ * policy, and addItemNoRollback() rolls back. Use it where this JVM is the only writer, or set a rebuild
+ * interval to bound how long an outside name stays unseen.
+ *
+ * @author peter
+ *
+ */
+public class ItemNameFilter implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ItemNameFilter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double falsePositiveRate;
+    private final long minimumCapacity;
+
+    private final AtomicLong absent = new AtomicLong();
+    private final AtomicLong maybePresent = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong rebuildFailures = new AtomicLong();
+
+    // names added by transactions that have not completed yet, with how many of them added each
+    private final Map<String, Integer> uncommitted = new ConcurrentHashMap<>();
+
+    private Duration rebuildInterval;
+    private ScheduledExecutorService scheduler;
+
+    private volatile BloomFilter filter;
+    // while rebuild() loads the table, names written meanwhile go to the filter being built too
+    private volatile BloomFilter next;
+
+    public ItemNameFilter(DataSource dataSource, double falsePositiveRate, long minimumCapacity) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(10_000);
+        this.falsePositiveRate = falsePositiveRate;
+        this.minimumCapacity = minimumCapacity;
+        this.filter = new BloomFilter(minimumCapacity, falsePositiveRate);
+    }
+
+    /**
+     * How often the filter is rebuilt from the table, for the names written by other clients; null, the
+     * default, to build it only on start.
+     */
+    public void setRebuildInterval(Duration rebuildInterval) {
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        rebuild();
+        if (rebuildInterval != null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "item-name-filter-rebuild");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = rebuildInterval.toMillis();
+            scheduler.scheduleAtFixedRate(this::scheduledRebuild, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A task that throws is never run again by the scheduler, so a failure is only logged and counted; the
+     * current filter stays in use.
+     */
+    private void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            rebuildFailures.incrementAndGet();
+            logger.error("Item name filter rebuild failed, trying again in {}", rebuildInterval, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Reloads the filter from the table, resized for its current row count. The names written meanwhile go to
+     * the new filter as well, and so do the uncommitted ones, which may commit after the query has read the
+     * table.
+     */
+    public synchronized void rebuild() {
+        Long rows = jdbcTemplate.queryForObject("select count(*) from item", Long.class);
+        BloomFilter rebuilt = new BloomFilter(Math.max(minimumCapacity, 2 * rows), falsePositiveRate);
+        next = rebuilt;
+        // after next is set: a name add() tracked before that is in uncommitted by now
+        uncommitted.keySet().forEach(rebuilt::put);
+        jdbcTemplate.query("select name from item", resultSet -> {
+            rebuilt.put(resultSet.getString(1));
+        });
+        filter = rebuilt;
+        next = null;
+    }
+
+    /**
+     * Empties the filter, for a truncated table. Inside a transaction nothing changes until it commits: a
+     * rolled back truncate leaves the names in the table, and the filter must not lose them. The filter is
+     * then rebuilt rather than just replaced, so it keeps the uncommitted names of the other transactions and
+     * supersedes a rebuild that read the table before the truncate.
+     */
+    public void clear() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            rebuild();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                rebuild();
+            }
+        });
+    }
+
+    /**
+     * Adds a name being written. Inside a transaction it is kept as uncommitted until the transaction
+     * completes, for rebuild().
+     */
+    public void add(String name) {
+        trackUncommitted(name);
+        // next is read before filter: when it is null and a rebuild starts afterwards, the rebuild finds the
+        // name in uncommitted, and when the rebuild has already swapped the filters, filter is the new one
+        BloomFilter building = next;
+        filter.put(name);
+        if (building != null) {
+            building.put(name);
+        }
+    }
+
+    private void trackUncommitted(String name) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        uncommitted.merge(name, 1, Integer::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                uncommitted.computeIfPresent(name, (key, count) -> count == 1 ? null : count - 1);
+            }
+        });
+    }
+
+    /**
+     * False when the name is definitely not in the table, true when it might be and the database has to tell.
+     */
+    public boolean mightContain(String name) {
+        if (filter.mightContain(name)) {
+            maybePresent.incrementAndGet();
+            return true;
+        }
+        absent.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Called when the database did not have a name the filter said might be there. It is only counted as a
+     * false positive when no open transaction has written it either: the filter was right about such a name,
+     * the row just is not visible yet, and counting it would inflate getObservedFalsePositiveRate().
+     */
+    public void falsePositive(String name) {
+        if (!uncommitted.containsKey(name)) {
+            falsePositives.incrementAndGet();
+        }
+    }
+
+    /**
+     * Probes answered "definitely absent", each one a query saved.
+     */
+    public long getAbsent() {
+        return absent.get();
+    }
+
+    public long getMaybePresent() {
+        return maybePresent.get();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    /**
+     * Share of the absent names that the filter could not rule out, as measured by the probes so far.
+     */
+    public double getObservedFalsePositiveRate() {
+        long negatives = absent.get() + falsePositives.get();
+        return negatives == 0 ? 0 : (double) falsePositives.get() / negatives;
+    }
+
+    public double getExpectedFalsePositiveRate() {
+        return filter.expectedFalsePositiveRate();
+    }
+
+    /**
+     * Scheduled rebuilds that failed since the start.
+     */
+    public long getRebuildFailures() {
+        return rebuildFailures.get();
+    }
+
+    public long getMemoryBytes() {
+        return filter.getBitSize() / 8;
+    }
+}
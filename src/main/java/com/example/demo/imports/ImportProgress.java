@@ -0,0 +1,115 @@
+package com.example.demo.imports;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of one ItemFileImporter.importFile() call, updated by the reader and the workers as they go.
+ * The same instance is passed to the progress listener after every committed batch and returned at the end.
+ *
+ * @author peter
+ *
+ */
+public class ImportProgress {
+
+    private final Path file;
+    private final long fileSize;
+    private final long startOffset;
+    private final long startNanos = System.nanoTime();
+
+    final AtomicLong bytesRead = new AtomicLong();
+    final AtomicLong records = new AtomicLong();
+    final AtomicLong resumed = new AtomicLong();
+    final AtomicLong added = new AtomicLong();
+    final AtomicLong duplicates = new AtomicLong();
+    final AtomicLong batches = new AtomicLong();
+    final AtomicLong retriedBatches = new AtomicLong();
+
+    ImportProgress(Path file, long fileSize, long startOffset) {
+        this.file = file;
+        this.fileSize = fileSize;
+        this.startOffset = startOffset;
+        this.bytesRead.set(startOffset);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Where reading started: 0, or the lowest offset committed by the workers of an interrupted import.
+     */
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Offset of the reader in the file. The records up to it are parsed, not necessarily committed.
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public double getFractionRead() {
+        return fileSize == 0 ? 1 : (double) bytesRead.get() / fileSize;
+    }
+
+    /**
+     * Records parsed from the start offset on, including the resumed ones.
+     */
+    public long getRecords() {
+        return records.get();
+    }
+
+    /**
+     * Records read again and passed over because an earlier, interrupted import of the file had already
+     * committed them. The ones before the start offset are not read at all.
+     */
+    public long getResumed() {
+        return resumed.get();
+    }
+
+    public long getAdded() {
+        return added.get();
+    }
+
+    /**
+     * Records whose name was already stored, or came earlier in the file.
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Batches rolled back by the unique index, because another transaction stored one of their names after
+     * the duplicate check, and committed again.
+     */
+    public long getRetriedBatches() {
+        return retriedBatches.get();
+    }
+
+    public Duration getElapsed() {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    public double getItemsPerSecond() {
+        long nanos = System.nanoTime() - startNanos;
+        return nanos == 0 ? 0 : (added.get() + duplicates.get()) * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %.1f%% read, %d records, %d resumed, %d added, %d duplicates, %d batches, %.0f items/s",
+                file, getFractionRead() * 100, getRecords(), getResumed(), getAdded(), getDuplicates(), getBatches(),
+                getItemsPerSecond());
+    }
+}
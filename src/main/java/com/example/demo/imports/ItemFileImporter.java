@@ -0,0 +1,455 @@
+package com.example.demo.imports;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.models.ImportCheckpoint;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ImportCheckpointRepository;
+import com.example.demo.repositories.ItemRepository;
+
+/**
+ * Imports a file in the CSV format of ItemExporter, a header line and then name,creationDate,buyNowPrice per
+ * item, with a pool of worker threads. The file is read by the calling thread through one reused buffer and
+ * parsed straight from its bytes: the only objects made per record are the Item and its field values.
+ *
+ * Records are partitioned by the hash of their name, so every occurrence of a name goes to the same worker
+ * and no two workers ever check or insert the same name. Each worker stores its records in transactions of
+ * batchSize items through ItemRepository.addItems(), skipping the names already taken, and records in the same
+ * transaction how far into the file it has committed (ImportCheckpoint). After a crash, importFile() on the
+ * same file with the same number of workers reads again from the lowest committed offset and passes over the
+ * records each worker had already committed, so none is lost or stored twice. The checkpoints are deleted once
+ * the whole file is imported.
+ *
+ * Every worker holds a connection while it commits, and without an AsyncLogWriter a second one for the audit
+ * log of addItems(): keep the workers to half the pool, or less.
+ *
+ * @author peter
+ *
+ */
+public class ItemFileImporter {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    // batches parsed ahead per worker, so the reader runs ahead of a slow commit but memory stays bounded
+    private static final int QUEUE_CAPACITY = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long POLL_MILLIS = 100;
+
+    private final ItemRepository itemRepository;
+    private final ImportCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int workers;
+    private final int batchSize;
+
+    private final AtomicInteger threads = new AtomicInteger();
+    private ThreadFactory threadFactory = runnable -> {
+        Thread thread = new Thread(runnable, "item-import-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+    private Consumer<ImportProgress> progressListener = progress -> {
+    };
+
+    public ItemFileImporter(ItemRepository itemRepository, ImportCheckpointRepository checkpointRepository,
+                            PlatformTransactionManager transactionManager, int workers, int batchSize) {
+        if (workers < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("workers and batchSize must be positive");
+        }
+        this.itemRepository = itemRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = workers;
+        this.batchSize = batchSize;
+    }
+
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Called by the workers after every committed batch. A listener that throws stops the import like a
+     * failed batch: what is committed stays committed, and importFile() resumes from there.
+     */
+    public void setProgressListener(Consumer<ImportProgress> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Imports the file, or what is left of it after an interrupted import, and returns the final progress.
+     * A malformed record or a failed batch stops the import and is thrown once the workers have committed
+     * what they had; call importFile() again to resume.
+     */
+    public ImportProgress importFile(Path file) throws IOException, InterruptedException {
+        String key = file.toAbsolutePath().normalize().toString();
+        // a worker without a checkpoint has committed nothing yet
+        long[] committed = new long[workers];
+        for (ImportCheckpoint checkpoint : checkpointRepository.findByFile(key)) {
+            if (checkpoint.getWorkers() != workers) {
+                throw new IllegalStateException("The import of " + key + " was started with " + checkpoint.getWorkers()
+                        + " workers, resume it with as many");
+            }
+            committed[checkpoint.getWorker()] = checkpoint.getCommittedOffset();
+        }
+        long startOffset = Arrays.stream(committed).min().getAsLong();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ImportProgress progress = new ImportProgress(file, channel.size(), startOffset);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Worker[] pool = new Worker[workers];
+            List<Thread> running = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                pool[i] = new Worker(i, key, progress, failure);
+                Thread thread = threadFactory.newThread(pool[i]);
+                running.add(thread);
+                thread.start();
+            }
+            try {
+                channel.position(startOffset);
+                new Reader(channel, startOffset, committed, pool, progress).read();
+            } finally {
+                for (Worker worker : pool) {
+                    worker.done = true;
+                }
+                for (Thread thread : running) {
+                    thread.join();
+                }
+            }
+            Throwable cause = failure.get();
+            if (cause instanceof RuntimeException e) {
+                throw e;
+            }
+            if (cause instanceof Error e) {
+                throw e;
+            }
+            if (cause instanceof InterruptedException e) {
+                throw e;
+            }
+            checkpointRepository.deleteByFile(key);
+            return progress;
+        }
+    }
+
+    private record Batch(List<Item> items, long endOffset) {
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int index;
+        private final String file;
+        private final ImportProgress progress;
+        private final AtomicReference<Throwable> failure;
+        private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile boolean done;
+
+        private Worker(int index, String file, ImportProgress progress, AtomicReference<Throwable> failure) {
+            this.index = index;
+            this.file = file;
+            this.progress = progress;
+            this.failure = failure;
+        }
+
+        /**
+         * Hands a batch to the worker, waiting while its queue is full. Returns false once the import has failed.
+         */
+        private boolean offer(Batch batch) throws InterruptedException {
+            while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    return false;
+                }
+            }
+            return failure.get() == null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (failure.get() == null) {
+                    Batch batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (batch != null) {
+                        commit(batch);
+                    } else if (done && queue.isEmpty()) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException | RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+
+        private void commit(Batch batch) {
+            for (int attempt = 1; ; attempt++) {
+                // a rolled back attempt has given its items ids, persist fresh ones
+                List<Item> items = attempt == 1 ? batch.items() : copies(batch.items());
+                try {
+                    int added = transactionTemplate.execute(status -> {
+                        int count = itemRepository.addItems(items, DuplicatePolicy.SKIP);
+                        checkpointRepository.save(new ImportCheckpoint(file, index, workers, batch.endOffset()));
+                        return count;
+                    });
+                    progress.added.addAndGet(added);
+                    progress.duplicates.addAndGet(items.size() - added);
+                    progress.batches.incrementAndGet();
+                    break;
+                } catch (DuplicateItemNameException e) {
+                    // with SKIP only the unique index throws it: another transaction stored one of the names
+                    // after the duplicate check, the next attempt finds it and skips it. Any other violation
+                    // would fail again, it stops the import.
+                    if (attempt == MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    progress.retriedBatches.incrementAndGet();
+                }
+            }
+            progressListener.accept(progress);
+        }
+
+        private static List<Item> copies(List<Item> items) {
+            List<Item> copies = new ArrayList<>(items.size());
+            for (Item item : items) {
+                Item copy = new Item(item.getName(), item.getCreationDate());
+                copy.setBuyNowPrice(item.getBuyNowPrice());
+                copies.add(copy);
+            }
+            return copies;
+        }
+    }
+
+    /**
+     * Parses the records out of the file and deals them to the workers. A record ends at a line break outside
+     * quotes, so quoted names may hold commas, quotes and line breaks, as ItemExporter writes them.
+     */
+    private final class Reader {
+
+        private final FileChannel channel;
+        private final long[] committed;
+        private final Worker[] pool;
+        private final ImportProgress progress;
+        private final List<List<Item>> pending = new ArrayList<>();
+        private final long[] pendingEnd;
+
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private byte[] name = new byte[256];
+        private char[] number = new char[32];
+        // offset in the file of buffer[0]
+        private long bufferOffset;
+        private boolean header;
+        private long records;
+        private long resumed;
+
+        private Reader(FileChannel channel, long startOffset, long[] committed, Worker[] pool, ImportProgress progress) {
+            this.channel = channel;
+            this.bufferOffset = startOffset;
+            this.header = startOffset == 0;
+            this.committed = committed;
+            this.pool = pool;
+            this.progress = progress;
+            this.pendingEnd = new long[pool.length];
+            for (int i = 0; i < pool.length; i++) {
+                pending.add(new ArrayList<>(batchSize));
+            }
+        }
+
+        private void read() throws IOException, InterruptedException {
+            int position = 0;
+            int limit = 0;
+            boolean eof = false;
+            while (true) {
+                int end = recordEnd(position, limit);
+                if (end >= 0) {
+                    if (!record(position, end, bufferOffset + end + 1)) {
+                        return;
+                    }
+                    position = end + 1;
+                    continue;
+                }
+                if (eof) {
+                    // the last record may have no line break
+                    if (position < limit && !record(position, limit, bufferOffset + limit)) {
+                        return;
+                    }
+                    break;
+                }
+                // move the partial record to the front, grow the buffer only for a record larger than it
+                if (position > 0) {
+                    System.arraycopy(buffer, position, buffer, 0, limit - position);
+                    bufferOffset += position;
+                    limit -= position;
+                    position = 0;
+                }
+                if (limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit));
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    limit += read;
+                }
+            }
+            for (int i = 0; i < pool.length; i++) {
+                if (!pending.get(i).isEmpty() && !send(i)) {
+                    return;
+                }
+            }
+            publish(bufferOffset + limit);
+        }
+
+        private int recordEnd(int from, int to) {
+            boolean quoted = false;
+            for (int i = from; i < to; i++) {
+                byte b = buffer[i];
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Parses the record in buffer[from, to) and queues it for its worker. Returns false once the import
+         * has failed.
+         */
+        private boolean record(int from, int to, long endOffset) throws InterruptedException {
+            if (to > from && buffer[to - 1] == '\r') {
+                to--;
+            }
+            if (header) {
+                header = false;
+                return true;
+            }
+            if (to == from) {
+                return true;
+            }
+            Item item;
+            try {
+                item = parse(from, to);
+            } catch (DateTimeException | NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed record at offset " + (bufferOffset + from)
+                        + " of " + progress.getFile(), e);
+            }
+            records++;
+            int worker = Math.floorMod(item.getName().hashCode(), pool.length);
+            if (endOffset <= committed[worker]) {
+                resumed++;
+                return true;
+            }
+            List<Item> batch = pending.get(worker);
+            batch.add(item);
+            pendingEnd[worker] = endOffset;
+            return batch.size() < batchSize || send(worker);
+        }
+
+        private Item parse(int from, int to) {
+            int i = from;
+            String itemName;
+            if (i < to && buffer[i] == '"') {
+                if (name.length < to - from) {
+                    name = new byte[to - from];
+                }
+                int length = 0;
+                i++;
+                while (i < to) {
+                    byte b = buffer[i++];
+                    if (b == '"') {
+                        // a doubled quote is a quote, a single one closes the field
+                        if (i < to && buffer[i] == '"') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    name[length++] = b;
+                }
+                itemName = new String(name, 0, length, StandardCharsets.UTF_8);
+            } else {
+                int start = i;
+                while (i < to && buffer[i] != ',') {
+                    i++;
+                }
+                itemName = new String(buffer, start, i - start, StandardCharsets.UTF_8);
+            }
+            int dateStart = Math.min(i + 1, to);
+            int dateEnd = dateStart;
+            while (dateEnd < to && buffer[dateEnd] != ',') {
+                dateEnd++;
+            }
+            Item item = new Item(itemName, date(dateStart, dateEnd));
+            int priceStart = Math.min(dateEnd + 1, to);
+            if (priceStart < to) {
+                item.setBuyNowPrice(price(priceStart, to));
+            }
+            return item;
+        }
+
+        private LocalDate date(int from, int to) {
+            int length = to - from;
+            if (length == 0) {
+                return null;
+            }
+            if (length == 10 && buffer[from + 4] == '-' && buffer[from + 7] == '-') {
+                return LocalDate.of(digits(from, from + 4), digits(from + 5, from + 7), digits(from + 8, to));
+            }
+            return LocalDate.parse(new String(buffer, from, length, StandardCharsets.US_ASCII));
+        }
+
+        private int digits(int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new DateTimeException("Not a date: " + new String(buffer, from, to - from, StandardCharsets.US_ASCII));
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private BigDecimal price(int from, int to) {
+            int length = to - from;
+            if (number.length < length) {
+                number = new char[length];
+            }
+            for (int i = 0; i < length; i++) {
+                number[i] = (char) buffer[from + i];
+            }
+            return new BigDecimal(number, 0, length);
+        }
+
+        private boolean send(int worker) throws InterruptedException {
+            List<Item> batch = pending.get(worker);
+            pending.set(worker, new ArrayList<>(batchSize));
+            publish(pendingEnd[worker]);
+            return pool[worker].offer(new Batch(batch, pendingEnd[worker]));
+        }
+
+        private void publish(long offset) {
+            progress.bytesRead.set(Math.max(progress.bytesRead.get(), offset));
+            progress.records.set(records);
+            progress.resumed.set(resumed);
+        }
+    }
+}
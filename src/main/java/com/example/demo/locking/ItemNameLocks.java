@@ -0,0 +1,100 @@
+package com.example.demo.locking;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Opt-in lock of item names. Declaring this bean makes ItemRepository.addItem() and addItemNoRollback() lock
+ * the name until the end of the transaction before checkNameDuplicate(), so two transactions adding the same
+ * name run one after the other: the second sees the committed item and fails on the check, instead of both
+ * passing it and the second one blocking on the unique index of Item.name and aborting there.
+ *
+ * Only callers of the same name wait for each other. With LockScope.JVM names are hashed onto a fixed number
+ * of striped locks, so two names on one stripe also wait, which is rare with enough stripes. A JVM lock is
+ * given up after lockTimeout with a CannotAcquireLockException, which also breaks the deadlock of one
+ * transaction locking two names in the opposite order of another. With LockScope.DATABASE the lock is
+ * pg_advisory_xact_lock() on the hash of the name, taken on the connection of the transaction; PostgreSQL
+ * releases it on commit or rollback and detects the deadlocks itself.
+ *
+ * addItems() does not lock its names, it keeps relying on the unique index. The index stays the guarantee
+ * anyway, the locks only keep the losing transaction from being aborted by it.
+ *
+ * @author peter
+ *
+ */
+public class ItemNameLocks {
+
+    /** First key of the advisory locks, so that they do not collide with other users of advisory locks. */
+    static final int ADVISORY_LOCK_CLASS = 0x49544d; // "ITM"
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LockScope scope;
+    private final ReentrantLock[] stripes;
+    private final long lockTimeoutNanos;
+
+    /**
+     * @param stripes number of JVM locks, rounded up to a power of two
+     */
+    public ItemNameLocks(DataSource dataSource, LockScope scope, int stripes, Duration lockTimeout) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.scope = scope;
+        this.stripes = new ReentrantLock[Integer.highestOneBit(Math.max(1, stripes) * 2 - 1)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.lockTimeoutNanos = lockTimeout.toNanos();
+    }
+
+    /**
+     * Locks the name until the current transaction completes.
+     */
+    public void lock(String name) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalTransactionStateException("Item names can only be locked inside a transaction");
+        }
+        if (scope == LockScope.DATABASE) {
+            jdbcTemplate.query("select pg_advisory_xact_lock(?, hashtext(?))", resultSet -> {
+            }, ADVISORY_LOCK_CLASS, name);
+            return;
+        }
+        ReentrantLock lock = stripeOf(name);
+        try {
+            if (!lock.tryLock(lockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new CannotAcquireLockException("Timed out locking item name " + name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrupted locking item name " + name, e);
+        }
+        // runs on the thread of the transaction, the owner of the lock
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    public LockScope getScope() {
+        return scope;
+    }
+
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    private ReentrantLock stripeOf(String name) {
+        int hash = name.hashCode();
+        // spread the high bits, as HashMap does
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.demo.locking;
+
+/**
+ * Where ItemNameLocks takes the lock of a name.
+ *
+ * @author peter
+ *
+ */
+public enum LockScope {
+
+	/** A striped lock of this JVM: no round trip, but only serializes the callers of one node. */
+	JVM,
+
+	/** A PostgreSQL transaction-level advisory lock, seen by every node sharing the database. */
+	DATABASE
+}
@@ -0,0 +1,64 @@
+package com.example.demo.metrics;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * A JpaTransactionManager that reports every physical transaction to {@link TransactionMetrics}.
+ * The begin time is taken before the connection is borrowed, so the duration includes the wait for
+ * the pool. When metrics are disabled the plain JpaTransactionManager is used and nothing is recorded.
+ *
+ * @author peter
+ *
+ */
+public class MeteredJpaTransactionManager extends JpaTransactionManager {
+
+    private final TransactionMetrics metrics;
+
+    public MeteredJpaTransactionManager(EntityManagerFactory emf, TransactionMetrics metrics) {
+        super(emf);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        long start = System.nanoTime();
+        super.doBegin(transaction, definition);
+        metrics.begun(definition, start);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        try {
+            super.doCommit(status);
+        } catch (RuntimeException | Error e) {
+            metrics.commitFailed();
+            throw e;
+        }
+        metrics.committed();
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+        metrics.rollingBack();
+        super.doRollback(status);
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+        metrics.suspended();
+        return super.doSuspend(transaction);
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            metrics.completed();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.demo.metrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.data.repository.Repository;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records the physical transactions opened by a {@link MeteredJpaTransactionManager} as Micrometer meters:
+ * <ul>
+ * <li>{@code transactions.begin}: transactions started, tagged by propagation and method</li>
+ * <li>{@code transactions}: duration from begin to completion, also tagged by outcome: commit, rollback, or
+ * commit_failed when the commit itself throws (a flush that violates a constraint, a lost connection...)</li>
+ * <li>{@code transactions.statements}: SQL statements prepared inside each transaction</li>
+ * <li>{@code transactions.suspended}: transactions suspended by REQUIRES_NEW, NOT_SUPPORTED...</li>
+ * </ul>
+ * The method tag is the transaction name shortened to class and method. Spring Data names the transactions
+ * of every repository after SimpleJpaRepository, so for repository calls the class is taken from the
+ * repository interface the call went through instead (ItemRepository.addItem, LogRepository.log).
+ * Transactions that only join an existing one are not physical transactions and are not counted.
+ *
+ * Hibernate reports the statements through the {@link StatementInspector} callback, on the thread that
+ * runs the transaction, so they are charged to the innermost transaction open on that thread. The
+ * statements are passed on to the next inspector unchanged.
+ *
+ * @author peter
+ *
+ */
+public class TransactionMetrics implements StatementInspector {
+
+    static final String UNNAMED = "unnamed";
+    static final String COMMIT_FAILED = "commit_failed";
+
+    private final MeterRegistry registry;
+    private final StatementInspector next;
+    private final Counter suspended;
+
+    // the transactions open on this thread, the innermost first
+    private final ThreadLocal<Deque<Sample>> open = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public TransactionMetrics(MeterRegistry registry) {
+        this(registry, sql -> sql);
+    }
+
+    public TransactionMetrics(MeterRegistry registry, StatementInspector next) {
+        this.registry = registry;
+        this.next = next;
+        this.suspended = Counter.builder("transactions.suspended")
+                .description("Transactions suspended to run another one or none")
+                .register(registry);
+    }
+
+    void begun(TransactionDefinition definition, long startNanos) {
+        Tags tags = Tags.of("propagation", propagation(definition.getPropagationBehavior()),
+                "method", method(definition.getName(), repositoryInvocation()));
+        registry.counter("transactions.begin", tags).increment();
+        open.get().push(new Sample(tags, startNanos));
+    }
+
+    void committed() {
+        outcome("commit");
+    }
+
+    void commitFailed() {
+        outcome(COMMIT_FAILED);
+    }
+
+    void rollingBack() {
+        Sample sample = open.get().peek();
+        // after a failed commit Spring may roll back what is left, it stays a failed commit
+        if (sample != null && !COMMIT_FAILED.equals(sample.outcome)) {
+            sample.outcome = "rollback";
+        }
+    }
+
+    private void outcome(String outcome) {
+        Sample sample = open.get().peek();
+        if (sample != null) {
+            sample.outcome = outcome;
+        }
+    }
+
+    void completed() {
+        Deque<Sample> samples = open.get();
+        Sample sample = samples.poll();
+        if (samples.isEmpty()) {
+            open.remove();
+        }
+        if (sample == null) {
+            return;
+        }
+        Timer.builder("transactions")
+                .description("Physical transactions, from begin to commit or rollback")
+                .tags(sample.tags)
+                .tag("outcome", sample.outcome)
+                .register(registry)
+                .record(System.nanoTime() - sample.startNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("transactions.statements")
+                .description("SQL statements prepared inside a transaction")
+                .tags(sample.tags)
+                .register(registry)
+                .record(sample.statements);
+    }
+
+    void suspended() {
+        suspended.increment();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Sample sample = open.get().peek();
+        if (sample != null) {
+            sample.statements++;
+        }
+        return next.inspect(sql);
+    }
+
+    static String propagation(int behavior) {
+        for (Propagation propagation : Propagation.values()) {
+            if (propagation.value() == behavior) {
+                return propagation.name();
+            }
+        }
+        return String.valueOf(behavior);
+    }
+
+    static String method(String transactionName, MethodInvocation invocation) {
+        if (transactionName == null) {
+            return UNNAMED;
+        }
+        int methodDot = transactionName.lastIndexOf('.');
+        int classDot = methodDot > 0 ? transactionName.lastIndexOf('.', methodDot - 1) : -1;
+        String method = transactionName.substring(classDot + 1);
+        // a TransactionTemplate used inside a repository method sees that method's invocation: skip it
+        if (invocation instanceof ProxyMethodInvocation proxyInvocation
+                && transactionName.endsWith("." + invocation.getMethod().getName())) {
+            for (Class<?> proxied : AopProxyUtils.proxiedUserInterfaces(proxyInvocation.getProxy())) {
+                if (Repository.class.isAssignableFrom(proxied)) {
+                    return proxied.getSimpleName() + "." + invocation.getMethod().getName();
+                }
+            }
+        }
+        return method;
+    }
+
+    private static MethodInvocation repositoryInvocation() {
+        try {
+            // Spring Data exposes the invocation to the advice of its repository proxies
+            return ExposeInvocationInterceptor.currentInvocation();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static class Sample {
+
+        private final Tags tags;
+        private final long startNanos;
+        private String outcome = "rollback";
+        private long statements;
+
+        private Sample(Tags tags, long startNanos) {
+            this.tags = tags;
+            this.startNanos = startNanos;
+        }
+    }
+}
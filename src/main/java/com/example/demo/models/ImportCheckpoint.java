@@ -0,0 +1,89 @@
+package com.example.demo.models;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * How far one worker of an ItemFileImporter has got through a file: every record of its partition that ends at
+ * or before committedOffset is stored. The row is written in the same transaction as the items, so it never
+ * runs ahead of them or lags behind.
+ */
+@Entity
+@Table(name = "import_checkpoint")
+@IdClass(ImportCheckpoint.Key.class)
+public class ImportCheckpoint {
+
+    @Id
+    @Column(length = 1024)
+    private String file;
+
+    @Id
+    private int worker;
+
+    // the partitioning of the file depends on the number of workers, a resume has to use as many
+    private int workers;
+
+    private long committedOffset;
+
+    public ImportCheckpoint() {
+    }
+
+    public ImportCheckpoint(String file, int worker, int workers, long committedOffset) {
+        this.file = file;
+        this.worker = worker;
+        this.workers = workers;
+        this.committedOffset = committedOffset;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public int getWorker() {
+        return worker;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportCheckpoint [file=" + file + ", worker=" + worker + "/" + workers
+                + ", committedOffset=" + committedOffset + "]";
+    }
+
+    public static class Key implements Serializable {
+
+        private String file;
+        private int worker;
+
+        public Key() {
+        }
+
+        public Key(String file, int worker) {
+            this.file = file;
+            this.worker = worker;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && worker == key.worker && Objects.equals(file, key.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, worker);
+        }
+    }
+}
@@ -3,21 +3,50 @@ package com.example.demo.models;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import com.example.demo.ids.PooledSequenceGenerator;
+
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 
 
+/**
+ * The catalog is read far more than it is written, so items live in the second-level cache and so
+ * does the name to id resolution. READ_WRITE keeps the cached copy in step with the @Version column.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")
+@NaturalIdCache(region = "item-natural-id")
+@Table(uniqueConstraints = @UniqueConstraint(name = Item.NAME_CONSTRAINT, columnNames = "name"))
 public class Item {
 
+    /**
+     * Unique index backing the duplicate name check, so the check never has to load the table.
+     * It is also the index of the natural id, which Hibernate emits unnamed, so it carries the
+     * name PostgreSQL gives an unnamed unique constraint.
+     */
+    public static final String NAME_CONSTRAINT = "item_name_key";
+
 	@Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "item_seq")
+    // blocks of id.allocation_size ids from item_seq, see PooledSequenceGenerator
+    @GenericGenerator(name = "item_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "item_seq"))
     private Long id;
 
     @Version
     private long version;
 
     @NotNull
+    @NaturalId(mutable = true)
     private String name;
 
     private LocalDate creationDate;
@@ -52,6 +81,10 @@ public class Item {
         this.name = name;
     }
 
+    public LocalDate getCreationDate() {
+        return creationDate;
+    }
+
     public BigDecimal getBuyNowPrice() {
         return buyNowPrice;
     }
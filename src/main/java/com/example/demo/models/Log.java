@@ -2,44 +2,122 @@ package com.example.demo.models;
 
 import java.time.LocalDate;
 
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import com.example.demo.audit.AuditEvent;
+import com.example.demo.audit.AuditEventConverter;
+import com.example.demo.ids.PooledSequenceGenerator;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
+/**
+ * An audit log, stored as the code of its AuditEvent and the parameters of the message; the template
+ * text is not repeated in every row. getMessage() renders the message as it was written.
+ *
+ * Until V4 drops the message column, every log also has its rendered text there, which is all the previous
+ * version reads, so its instances keep showing the logs of this one during a rolling deploy. A free-text
+ * (TEXT) log is written there only, without parameters; the others have both, and are only compact once V4
+ * has run. A log without parameters is read from that column, which also covers those the previous version
+ * wrote.
+ */
 @Entity
+@Table(indexes = @Index(name = "log_date_idx", columnList = "date"))
 public class Log {
 
-	private int id;
-    private String message;
+	private long id;
+    private AuditEvent event;
+    private String parameters;
+    private String legacyMessage;
     private LocalDate date;
 
     public Log() {
     }
 
     public Log(String message) {
-        this.message = message;
+        this(AuditEvent.TEXT, message);
+    }
+
+    public Log(AuditEvent event, Object... parameters) {
+        this.event = event;
+        String joined = event.join(parameters);
+        if (event == AuditEvent.TEXT) {
+            this.legacyMessage = joined;
+        } else {
+            this.parameters = joined;
+            this.legacyMessage = event.render(joined);
+        }
         this.date = LocalDate.now();
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
-    public int getId() {
+    @GeneratedValue(generator = "log_seq")
+    // same pooled allocation as Item, the audit log is written far more often than items
+    @GenericGenerator(name = "log_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "log_seq"))
+    public long getId() {
         return id;
     }
 
-    public void setId(int id) {
+    public void setId(long id) {
         this.id = id;
     }
 
+    // TEXT for the rows of the previous version, which only write message, as in V2
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @Convert(converter = AuditEventConverter.class)
+    public AuditEvent getEvent() {
+        return event;
+    }
+
+    public void setEvent(AuditEvent event) {
+        this.event = event;
+    }
+
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
+
+    // the column of the previous version, the rendered text of every log; dropped by V4 together with this property
+    @Column(name = "message")
+    public String getLegacyMessage() {
+        return legacyMessage;
+    }
+
+    public void setLegacyMessage(String legacyMessage) {
+        this.legacyMessage = legacyMessage;
+    }
+
+    @Transient
     public String getMessage() {
-        return message;
+        if (event == null) {
+            return null;
+        }
+        return parameters == null ? legacyMessage : event.render(parameters);
     }
 
     public void setMessage(String message) {
-        this.message = message;
+        this.event = AuditEvent.TEXT;
+        this.parameters = null;
+        this.legacyMessage = message;
     }
 
+    // the partition key of the table, see LogPartitionManager
+    @Column(nullable = false)
     public LocalDate getDate() {
         return date;
     }
@@ -50,6 +128,6 @@ public class Log {
 
     @Override
     public String toString() {
-        return "Log [message=" + message + ", date=" + date + "]";
+        return "Log [message=" + getMessage() + ", date=" + date + "]";
     }
 }
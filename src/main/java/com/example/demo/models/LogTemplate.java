@@ -0,0 +1,47 @@
+package com.example.demo.models;
+
+import com.example.demo.audit.AuditEvent;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * One row per AuditEvent, so that the logs can be read as text from SQL too:
+ * replace(t.template, '{0}', l.parameters) for the events of one parameter. The application renders them
+ * from AuditEvent and never reads this table.
+ */
+@Entity
+@Table(name = "log_template")
+public class LogTemplate {
+
+    @Id
+    private short id;
+
+    private String template;
+
+    public LogTemplate() {
+    }
+
+    public LogTemplate(AuditEvent event) {
+        this.id = event.getCode();
+        this.template = event.getTemplate();
+    }
+
+    public short getId() {
+        return id;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public void setTemplate(String template) {
+        this.template = template;
+    }
+
+    @Override
+    public String toString() {
+        return "LogTemplate [id=" + id + ", template=" + template + "]";
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.demo.projections;
+
+/**
+ * Closed interface projection of Item: Spring Data selects only the name column and backs each result with
+ * a tuple, there is no entity, no snapshot and nothing in the persistence context.
+ *
+ * @author peter
+ *
+ */
+public interface ItemName {
+
+	String getName();
+}
@@ -0,0 +1,13 @@
+package com.example.demo.projections;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * What an export needs of an Item, built by a JPQL constructor expression. Leaves out the id and version.
+ *
+ * @author peter
+ *
+ */
+public record ItemSummary(String name, LocalDate creationDate, BigDecimal buyNowPrice) {
+}
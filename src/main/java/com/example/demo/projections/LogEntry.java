@@ -0,0 +1,21 @@
+package com.example.demo.projections;
+
+import java.time.LocalDate;
+
+import com.example.demo.audit.AuditEvent;
+
+/**
+ * Log read as a value, for listings. The id is kept as the keyset of the next page.
+ *
+ * @author peter
+ *
+ */
+public record LogEntry(long id, String message, LocalDate date) {
+
+    /**
+     * From the columns of a Log, rendering the message.
+     */
+    public LogEntry(long id, AuditEvent event, String parameters, LocalDate date) {
+        this(id, event.render(parameters), date);
+    }
+}
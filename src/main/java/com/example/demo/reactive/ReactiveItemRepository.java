@@ -0,0 +1,123 @@
+package com.example.demo.reactive;
+
+import java.time.LocalDate;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import com.example.demo.audit.AuditEvent;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.models.Item;
+
+import io.r2dbc.postgresql.api.PostgresqlException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of addItem(), addItemNoRollback() and checkNameDuplicate() of ItemRepositoryCustom,
+ * with the same propagation: addItem() is REQUIRED, checkNameDuplicate() MANDATORY and the audit log
+ * REQUIRES_NEW.
+ *
+ * Items are inserted with plain SQL, taking their id straight from item_seq. Hibernate uses each value of
+ * the sequence as the start of a block of ids (PooledSequenceGenerator), so the ids never collide with the
+ * ones of ItemRepository; they only leave the rest of that block unused. The ItemNameFilter and the
+ * ItemNameLocks are not consulted, the unique key on the name still rejects a duplicate that gets past
+ * the check.
+ *
+ * @author peter
+ *
+ */
+public class ReactiveItemRepository {
+
+    private final DatabaseClient databaseClient;
+    private final ReactiveLogRepository logRepository;
+    private final TransactionalOperator required;
+    private final TransactionalOperator mandatory;
+
+    public ReactiveItemRepository(DatabaseClient databaseClient, ReactiveTransactionManager transactionManager,
+            ReactiveLogRepository logRepository) {
+        this.databaseClient = databaseClient;
+        this.logRepository = logRepository;
+        this.required = TransactionalOperator.create(transactionManager, new DefaultTransactionDefinition());
+        this.mandatory = TransactionalOperator.create(transactionManager,
+                new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_MANDATORY));
+    }
+
+    public Mono<Boolean> existsByName(String name) {
+        return databaseClient.sql("select 1 from item where name = :name")
+                .bind("name", name)
+                .map(row -> 1)
+                .first()
+                .hasElement();
+    }
+
+    public Mono<Void> checkNameDuplicate(String name) {
+        return existsByName(name)
+                .flatMap(exists -> exists ? Mono.<Void>error(duplicateName(name)) : Mono.<Void>empty())
+                .as(mandatory::transactional);
+    }
+
+    /**
+     * The audit log is written before the transaction of the item starts rather than inside it: it is
+     * committed on its own either way, and this way one call never holds two connections, so the calls in
+     * flight cannot take the whole pool and wait on each other for the second one.
+     */
+    public Mono<Void> addItem(String name, LocalDate creationDate) {
+        return logRepository.audit(AuditEvent.ADDING_ITEM, name)
+                .then(checkNameDuplicate(name)
+                        .then(insert(name, creationDate))
+                        .as(required::transactional));
+    }
+
+    /**
+     * Like ItemRepository.addItemNoRollback(): on a duplicate name the transaction still commits, with the
+     * log written in it, and only then is the DuplicateItemNameException signalled.
+     */
+    public Mono<Void> addItemNoRollback(String name, LocalDate creationDate) {
+        return logRepository.save(AuditEvent.ADDING_ITEM_NO_ROLLBACK, name)
+                .then(checkNameDuplicate(name))
+                .then(insert(name, creationDate))
+                .then(Mono.<DuplicateItemNameException>empty())
+                .onErrorResume(DuplicateItemNameException.class, Mono::just)
+                .as(required::transactional)
+                .flatMap(e -> Mono.<Void>error(e));
+    }
+
+    private Mono<Void> insert(String name, LocalDate creationDate) {
+        DatabaseClient.GenericExecuteSpec insert = databaseClient
+                .sql("insert into item (id, version, name, creationDate) values (nextval('item_seq'), 0, :name, :creationDate)")
+                .bind("name", name);
+        insert = creationDate == null
+                ? insert.bindNull("creationDate", LocalDate.class)
+                : insert.bind("creationDate", creationDate);
+        // another caller stored the same name after the check
+        return insert.then()
+                .onErrorMap(ReactiveItemRepository::isNameViolation, e -> duplicateName(name));
+    }
+
+    /**
+     * Only the unique key on the name is a duplicate, as in ItemRepositoryImpl; any other integrity violation
+     * goes to the caller as it is.
+     */
+    private static boolean isNameViolation(Throwable e) {
+        if (!(e instanceof DataIntegrityViolationException)) {
+            return false;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PostgresqlException postgresql) {
+                return postgresql.getErrorDetails().getConstraintName()
+                        .filter(Item.NAME_CONSTRAINT::equalsIgnoreCase)
+                        .isPresent();
+            }
+        }
+        return false;
+    }
+
+    private static DuplicateItemNameException duplicateName(String name) {
+        return new DuplicateItemNameException("Item with name " + name + " already exists");
+    }
+}
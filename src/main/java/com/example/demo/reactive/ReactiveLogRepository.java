@@ -0,0 +1,123 @@
+package com.example.demo.reactive;
+
+import java.time.LocalDate;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import com.example.demo.audit.AuditEvent;
+import com.example.demo.projections.LogEntry;
+import com.example.demo.repositories.LogRepository;
+
+import io.r2dbc.spi.Readable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of the LogRepositoryCustom operations, over R2DBC: no thread waits for the
+ * database, the work resumes when the rows arrive. Writes the same log table as LogRepository, so the
+ * two can be used side by side.
+ *
+ * The propagation is set with a TransactionalOperator per operation instead of @Transactional, which
+ * would need the reactive transaction manager to be the default one of the context.
+ *
+ * @author peter
+ *
+ */
+public class ReactiveLogRepository {
+
+    private static final int FETCH_SIZE = Integer.parseInt(LogRepository.FETCH_SIZE);
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator requiresNew;
+    private final TransactionalOperator readOnly;
+
+    public ReactiveLogRepository(DatabaseClient databaseClient, ReactiveTransactionManager transactionManager) {
+        this.databaseClient = databaseClient;
+        this.requiresNew = TransactionalOperator.create(transactionManager,
+                new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        DefaultTransactionDefinition readOnlyDefinition = new DefaultTransactionDefinition();
+        readOnlyDefinition.setReadOnly(true);
+        this.readOnly = TransactionalOperator.create(transactionManager, readOnlyDefinition);
+    }
+
+    /**
+     * Same as LogRepository.log(): committed in a transaction of its own, whatever happens to the caller's.
+     */
+    public Mono<Void> log(String message) {
+        return log(AuditEvent.TEXT, message);
+    }
+
+    public Mono<Void> log(AuditEvent event, Object... parameters) {
+        return save(event, parameters).as(requiresNew::transactional);
+    }
+
+    /**
+     * Audit entry that must survive a rollback of the caller. There is no reactive AsyncLogWriter: log()
+     * does not block a thread, so there is nothing to gain from queueing.
+     */
+    public Mono<Void> audit(String message) {
+        return log(message);
+    }
+
+    public Mono<Void> audit(AuditEvent event, Object... parameters) {
+        return log(event, parameters);
+    }
+
+    /**
+     * Joins the caller's transaction if there is one, like LogRepository.save().
+     */
+    public Mono<Void> save(String message) {
+        return save(AuditEvent.TEXT, message);
+    }
+
+    /**
+     * Writes the rendered message to the message column too, and a TEXT message only there, as Log does
+     * until V4 drops the column.
+     */
+    public Mono<Void> save(AuditEvent event, Object... parameters) {
+        String joined = event.join(parameters);
+        DatabaseClient.GenericExecuteSpec insert = databaseClient
+                .sql("insert into log (id, event, parameters, message, date) values (nextval('log_seq'), :event, :parameters, :message, :date)")
+                .bind("event", event.getCode())
+                .bind("date", LocalDate.now());
+        if (event == AuditEvent.TEXT) {
+            insert = insert.bindNull("parameters", String.class);
+            // only a TEXT log has a null message
+            insert = joined == null ? insert.bindNull("message", String.class) : insert.bind("message", joined);
+        } else {
+            insert = insert.bind("parameters", joined).bind("message", event.render(joined));
+        }
+        return insert.then();
+    }
+
+    /**
+     * Every log in id order, over a single cursor in one read-only transaction. The rows are fetched
+     * FETCH_SIZE at a time and only as fast as the subscriber requests them.
+     */
+    public Flux<LogEntry> streamLogs() {
+        return databaseClient.sql("select id, event, coalesce(parameters, message) as parameters, date from log order by id")
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(ReactiveLogRepository::logEntry)
+                .all()
+                .as(readOnly::transactional);
+    }
+
+    public Flux<LogEntry> streamLogs(LocalDate from, LocalDate to) {
+        return databaseClient.sql("select id, event, coalesce(parameters, message) as parameters, date from log where date between :from and :to order by id")
+                .bind("from", from)
+                .bind("to", to)
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(ReactiveLogRepository::logEntry)
+                .all()
+                .as(readOnly::transactional);
+    }
+
+    private static LogEntry logEntry(Readable row) {
+        return new LogEntry(row.get("id", Long.class), AuditEvent.of(row.get("event", Short.class)),
+                row.get("parameters", String.class), row.get("date", LocalDate.class));
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.demo.repositories;
+
+/**
+ * What a bulk insert does when it meets an item whose name already exists, either in the database
+ * or earlier in the same batch. The first two mirror addItem() and addItemNoRollback().
+ *
+ * @author peter
+ *
+ */
+public enum DuplicatePolicy {
+
+	/** Throw DuplicateItemNameException and roll back the whole call, like addItem(). */
+	FAIL,
+
+	/** Throw DuplicateItemNameException but keep the items added before it, like addItemNoRollback(). */
+	FAIL_NO_ROLLBACK,
+
+	/** Ignore the duplicate and keep going with the rest of the items. */
+	SKIP
+}
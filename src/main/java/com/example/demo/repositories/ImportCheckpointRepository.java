@@ -0,0 +1,21 @@
+package com.example.demo.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.models.ImportCheckpoint;
+
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, ImportCheckpoint.Key> {
+
+	// not read-only: a replica may not have the latest checkpoints yet
+	List<ImportCheckpoint> findByFile(String file);
+
+	@Modifying
+	@Transactional
+	@Query("delete from ImportCheckpoint c where c.file = :file")
+	int deleteByFile(String file);
+}
@@ -1,12 +1,39 @@
 package com.example.demo.repositories;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.models.Item;
+import com.example.demo.projections.ItemName;
+import com.example.demo.projections.ItemSummary;
+
+import jakarta.persistence.QueryHint;
 
 public interface ItemRepository extends JpaRepository<Item, Long>, ItemRepositoryCustom {
 
-	Optional<Item> findByName(String name);
+	// query methods get no transaction from Spring Data: make them read-only ones, which go to the replica
+	@Transactional(readOnly = true)
+	@Query("select i.name from Item i where i.name in :names")
+	Set<String> findExistingNames(Collection<String> names);
+
+	// projections: only the selected columns are read, and nothing ends up in the persistence context
+	@Transactional(readOnly = true)
+	List<ItemName> findAllProjectedBy(Sort sort);
+
+	/**
+	 * Every item as an ItemSummary, over a database cursor. Call it from a read-only transaction and close the
+	 * stream, as the streaming queries of LogRepository.
+	 */
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = LogRepository.FETCH_SIZE))
+	@Query("select new com.example.demo.projections.ItemSummary(i.name, i.creationDate, i.buyNowPrice) from Item i order by i.id")
+	Stream<ItemSummary> streamSummaries();
 }
@@ -1,6 +1,12 @@
 package com.example.demo.repositories;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.example.demo.models.Item;
 
 /**
  * Such an interface is known as a FRAGMENT INTERFACE, and its purpose is to extend a repository 
@@ -11,11 +17,68 @@ import java.time.LocalDate;
  */
 public interface ItemRepositoryCustom {
 
+	/**
+	 * Looks the item up by its natural id, so repeated calls are served from the second-level cache.
+	 */
+	Optional<Item> findByName(String name);
+
 	void checkNameDuplicate(String name);
 	
 	void addItem(String name, LocalDate creationDate);
 
+	/**
+	 * Like addItem(), but a duplicate found by the check does not roll back the caller's transaction, and
+	 * the log stays. A duplicate stored concurrently after the check is only found by the unique index when
+	 * the item is flushed, and the failed statement has aborted the transaction by then: it rolls back, log
+	 * included, and DuplicateItemNameException is thrown all the same.
+	 */
 	void addItemNoRollback(String name, LocalDate creationDate);
+
+	/**
+	 * Like addItem(), but inside a savepoint of the caller's transaction (NESTED) rather than joining it: a
+	 * duplicate name rolls back only this item and its log, on the caller's connection, and the caller's
+	 * transaction carries on. Without a transaction it behaves like addItem(), except that the log is
+	 * rolled back with the item.
+	 *
+	 * Only a duplicate found by checkNameDuplicate() stays inside the savepoint. A name taken by a concurrent
+	 * transaction after the check fails the flush, and Hibernate marks the whole transaction rollback-only,
+	 * which a savepoint cannot undo; use ItemNameLocks to rule that out.
+	 */
+	void addItemNested(String name, LocalDate creationDate);
+
+	/**
+	 * Adds the items one savepoint each with addItemNested(), in a single transaction on a single connection,
+	 * skipping the names already taken. Returns how many items were added.
+	 */
+	int addItemsNested(Collection<Item> items);
+
+	/**
+	 * Adds amount to the buy now price. Concurrent calls on the same item conflict on its @Version,
+	 * run them through an OptimisticLockRetryTemplate to retry instead of failing.
+	 */
+	void raiseBuyNowPrice(String name, BigDecimal amount);
+
+	/**
+	 * Adds many items in one transaction, using JDBC batching and one duplicate query per chunk.
+	 * Returns how many items were actually added.
+	 */
+	int addItems(Collection<Item> items, DuplicatePolicy policy);
+
+	int addItems(Stream<Item> items, DuplicatePolicy policy);
+
+	/**
+	 * Deletes the items created between from and to, both included, with a single DELETE statement instead of
+	 * loading and deleting them one by one like deleteAll(). There is no @Version check. Pending changes are
+	 * flushed first and the persistence context is cleared afterwards, so no deleted item stays managed.
+	 * Returns how many items were deleted.
+	 */
+	int bulkDeleteByCreationDateBetween(LocalDate from, LocalDate to);
+
+	/**
+	 * Empties the table with TRUNCATE, flushing and clearing like bulkDeleteByCreationDateBetween().
+	 * The item caches are evicted.
+	 */
+	void truncate();
 	
     void addLogs();
 
@@ -1,15 +1,39 @@
 package com.example.demo.repositories;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import com.example.demo.audit.AuditEvent;
 import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.filter.ItemNameFilter;
+import com.example.demo.locking.ItemNameLocks;
 import com.example.demo.models.Item;
 import com.example.demo.models.Log;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+
 /**
  * We’ll provide an implementation class for ItemRepository next. The key part of this class name is 
  * the Impl ending. It is not connected to Spring Data and it only implements ItemRepositoryCustom. When 
@@ -27,34 +51,229 @@ import com.example.demo.models.Log;
  */
 public class ItemRepositoryImpl implements ItemRepositoryCustom {
 
+    /**
+     * Chunk size of addItems(); keep it equal to hibernate.jdbc.batch_size so every chunk is one batch.
+     */
+    static final int BATCH_SIZE = 50;
+
+    /**
+     * H2 names the index of the constraint rather than the constraint: "PUBLIC.ITEM_NAME_KEY_INDEX_2 ON
+     * PUBLIC.ITEM(NAME ...) VALUES ...". The first group is the constraint.
+     */
+    private static final Pattern H2_INDEX_NAME = Pattern.compile("(?s)^\"?(?:\\w+\\.)?(\\w+?)(?:_INDEX_\\d+)?(?: ON .*)?$");
+
 	@Autowired
     private ItemRepository itemRepository;
 
     @Autowired
     private LogRepository logRepository;
 
+    @Autowired
+    private ObjectProvider<ItemNameFilter> itemNameFilter;
+
+    @Autowired
+    private ObjectProvider<ItemNameLocks> itemNameLocks;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Item> findByName(String name) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Item.class).loadOptional(name);
+    }
+
     @Override
     @Transactional(propagation = Propagation.MANDATORY)
     public void checkNameDuplicate(String name) {
-        if (itemRepository.findAll().stream().map(item -> item.getName()).filter(n -> n.equals(name)).count() > 0) {
-            throw new DuplicateItemNameException("Item with name " + name + " already exists");
+        ItemNameFilter filter = itemNameFilter.getIfAvailable();
+        if (filter != null && !filter.mightContain(name)) {
+            // definitely a new name, no need to ask the database
+            return;
+        }
+        if (findByName(name).isPresent()) {
+            throw duplicateName(name);
+        }
+        if (filter != null) {
+            filter.falsePositive(name);
         }
     }
 
     @Override
     @Transactional
     public void addItem(String name, LocalDate creationDate) {
-        logRepository.log("adding item with name " + name);
+        logRepository.audit(AuditEvent.ADDING_ITEM, name);
+        lockName(name);
         checkNameDuplicate(name);
-        itemRepository.save(new Item(name, creationDate));
+        saveUnique(new Item(name, creationDate));
     }
 
     @Override
     @Transactional(noRollbackFor = DuplicateItemNameException.class)
     public void addItemNoRollback(String name, LocalDate creationDate) {
-        logRepository.save(new Log("adding log in method with no rollback for item " + name));
+        logRepository.save(new Log(AuditEvent.ADDING_ITEM_NO_ROLLBACK, name));
+        lockName(name);
+        checkNameDuplicate(name);
+        saveUnique(new Item(name, creationDate));
+    }
+
+    /**
+     * The log joins the savepoint, so it is not written through audit(): it is meant to go when the item does.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NESTED)
+    public void addItemNested(String name, LocalDate creationDate) {
+        logRepository.save(new Log(AuditEvent.ADDING_ITEM, name));
+        lockName(name);
         checkNameDuplicate(name);
-        itemRepository.save(new Item(name, creationDate));
+        saveUnique(new Item(name, creationDate));
+    }
+
+    @Override
+    @Transactional
+    public int addItemsNested(Collection<Item> items) {
+        int added = 0;
+        for (Item item : items) {
+            try {
+                // through the proxy, for the savepoint
+                itemRepository.addItemNested(item.getName(), item.getCreationDate());
+                added++;
+            } catch (DuplicateItemNameException e) {
+                // rolled back to the savepoint, the rest of the transaction is intact
+            }
+        }
+        return added;
+    }
+
+    @Override
+    @Transactional
+    public void raiseBuyNowPrice(String name, BigDecimal amount) {
+        Item item = findByName(name).orElseThrow(() -> new IllegalArgumentException("No item with name " + name));
+        BigDecimal price = item.getBuyNowPrice() == null ? BigDecimal.ZERO : item.getBuyNowPrice();
+        item.setBuyNowPrice(price.add(amount));
+    }
+
+    @Override
+    @Transactional(noRollbackFor = DuplicateItemNameException.class)
+    public int addItems(Collection<Item> items, DuplicatePolicy policy) {
+        return addItems(items.stream(), policy);
+    }
+
+    /**
+     * Items are handled in chunks of BATCH_SIZE: one "in" query finds the names already stored, the
+     * rest are persisted and flushed as a single JDBC batch, and then detached so memory does not grow with
+     * the size of the stream. Only the items of the call are detached: the entities the caller's transaction
+     * had loaded stay managed. Names seen earlier in the same call are remembered, so duplicates inside the
+     * batch are caught too.
+     *
+     * The rollback is decided per call: noRollbackFor keeps the transaction alive, and only the FAIL
+     * policy marks it rollback-only before throwing.
+     */
+    @Override
+    @Transactional(noRollbackFor = DuplicateItemNameException.class)
+    public int addItems(Stream<Item> items, DuplicatePolicy policy) {
+        Set<String> seen = new HashSet<>();
+        int added = 0;
+        Iterator<Item> iterator = items.iterator();
+        while (iterator.hasNext()) {
+            List<Item> chunk = new ArrayList<>(BATCH_SIZE);
+            while (iterator.hasNext() && chunk.size() < BATCH_SIZE) {
+                chunk.add(iterator.next());
+            }
+            added += addChunk(chunk, seen, policy);
+        }
+        return added;
+    }
+
+    private int addChunk(List<Item> chunk, Set<String> seen, DuplicatePolicy policy) {
+        logRepository.audit(AuditEvent.ADDING_ITEM_BATCH, chunk.size(), chunk.get(0).getName());
+        ItemNameFilter filter = itemNameFilter.getIfAvailable();
+        Set<String> existing = existingNames(chunk, filter);
+        List<Item> persisted = new ArrayList<>(chunk.size());
+        for (Item item : chunk) {
+            if (existing.contains(item.getName()) || !seen.add(item.getName())) {
+                if (policy == DuplicatePolicy.SKIP) {
+                    continue;
+                }
+                if (policy == DuplicatePolicy.FAIL) {
+                    TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                } else {
+                    flushBatch(persisted);
+                }
+                throw duplicateName(item.getName());
+            }
+            entityManager.persist(item);
+            persisted.add(item);
+            if (filter != null) {
+                filter.add(item.getName());
+            }
+        }
+        flushBatch(persisted);
+        return persisted.size();
+    }
+
+    /**
+     * Only the names the filter cannot rule out are looked up, with no query at all when it rules out every one.
+     */
+    private Set<String> existingNames(List<Item> chunk, ItemNameFilter filter) {
+        Set<String> names = chunk.stream().map(Item::getName).collect(Collectors.toSet());
+        if (filter == null) {
+            return itemRepository.findExistingNames(names);
+        }
+        names.removeIf(name -> !filter.mightContain(name));
+        if (names.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> existing = itemRepository.findExistingNames(names);
+        for (String name : names) {
+            if (!existing.contains(name)) {
+                filter.falsePositive(name);
+            }
+        }
+        return existing;
+    }
+
+    private void flushBatch(List<Item> persisted) {
+        try {
+            itemRepository.flush();
+            persisted.forEach(entityManager::detach);
+        } catch (DataIntegrityViolationException e) {
+            // the database aborted the transaction, nothing left to keep whatever the policy
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            if (isNameViolation(e)) {
+                throw new DuplicateItemNameException("An item of the batch was added concurrently by another transaction");
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional
+    public int bulkDeleteByCreationDateBetween(LocalDate from, LocalDate to) {
+        entityManager.flush();
+        // Hibernate evicts the Item and natural id cache regions after a bulk statement on Item
+        int deleted = entityManager.createQuery("delete from Item i where i.creationDate between :from and :to")
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .executeUpdate();
+        entityManager.clear();
+        return deleted;
+    }
+
+    @Override
+    @Transactional
+    public void truncate() {
+        entityManager.flush();
+        // a native statement: name the entity it touches, otherwise Hibernate evicts every cache region
+        entityManager.createNativeQuery("truncate table item")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Item.class)
+                .executeUpdate();
+        entityManager.clear();
+        ItemNameFilter filter = itemNameFilter.getIfAvailable();
+        if (filter != null) {
+            filter.clear();
+        }
     }
 
     @Override
@@ -68,4 +287,53 @@ public class ItemRepositoryImpl implements ItemRepositoryCustom {
     public void showLogs() {
         logRepository.showLogs();
     }
+
+    private void lockName(String name) {
+        ItemNameLocks locks = itemNameLocks.getIfAvailable();
+        if (locks != null) {
+            locks.lock(name);
+        }
+    }
+
+    /**
+     * checkNameDuplicate() is only a cheap probe: two concurrent transactions can both pass it, unless
+     * ItemNameLocks makes them take turns.
+     * The unique index on Item.name is the real guarantee, so we flush right away and turn its
+     * violation into the same DuplicateItemNameException the probe would have thrown.
+     *
+     * The flush goes through the EntityManager, not the repository: a failure inside a repository call marks
+     * the whole transaction rollback-only on the way out. Hibernate marks it anyway once a flush fails, so it
+     * cannot commit whatever noRollbackFor says; we roll back the caller's own transaction explicitly, so it
+     * ends with the DuplicateItemNameException and not with an UnexpectedRollbackException on commit.
+     */
+    private void saveUnique(Item item) {
+        try {
+            entityManager.persist(item);
+            entityManager.flush();
+            ItemNameFilter filter = itemNameFilter.getIfAvailable();
+            if (filter != null) {
+                filter.add(item.getName());
+            }
+        } catch (PersistenceException e) {
+            if (isNameViolation(e)) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                throw duplicateName(item.getName());
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isNameViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException cve) {
+                return cve.getConstraintName() != null && Item.NAME_CONSTRAINT.equalsIgnoreCase(
+                        H2_INDEX_NAME.matcher(cve.getConstraintName()).replaceFirst("$1"));
+            }
+        }
+        return false;
+    }
+
+    private static DuplicateItemNameException duplicateName(String name) {
+        return new DuplicateItemNameException("Item with name " + name + " already exists");
+    }
 }
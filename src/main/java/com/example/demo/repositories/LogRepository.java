@@ -1,9 +1,55 @@
 package com.example.demo.repositories;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.models.Log;
+import com.example.demo.projections.LogEntry;
+
+import jakarta.persistence.QueryHint;
+
+public interface LogRepository extends JpaRepository<Log, Long>, LogRepositoryCustom {
+
+	/**
+	 * Rows fetched per round trip by the streaming queries. PostgreSQL only honours it with a
+	 * server-side cursor, that is inside a transaction, so call them from a transactional method
+	 * and close the stream.
+	 */
+	String FETCH_SIZE = "500";
+
+	@QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE),
+			@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+	@Query("select l from Log l order by l.id")
+	Stream<Log> streamAll();
+
+	@QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE),
+			@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+	Stream<Log> streamByDateBetweenOrderByIdAsc(LocalDate from, LocalDate to);
+
+	// keyset pagination: next page after the last id seen, no OFFSET scan. Each page is a read-only
+	// transaction of its own, which goes to the replica
+	@Transactional(readOnly = true)
+	List<Log> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+	@Transactional(readOnly = true)
+	List<Log> findByDateBetweenAndIdGreaterThanOrderByIdAsc(LocalDate from, LocalDate to, long id, Limit limit);
 
-public interface LogRepository extends JpaRepository<Log, Integer>, LogRepositoryCustom {
+	// the same pages as LogEntry values, which need no persistence context; a log of the previous version
+	// has no parameters, only its message (see Log)
+	@Transactional(readOnly = true)
+	@Query("select new com.example.demo.projections.LogEntry(l.id, l.event, coalesce(l.parameters, l.legacyMessage), l.date) from Log l where l.id > :id order by l.id")
+	List<LogEntry> findEntriesByIdGreaterThan(long id, Limit limit);
 
+	@Transactional(readOnly = true)
+	@Query("select new com.example.demo.projections.LogEntry(l.id, l.event, coalesce(l.parameters, l.legacyMessage), l.date) from Log l"
+			+ " where l.date between :from and :to and l.id > :id order by l.id")
+	List<LogEntry> findEntriesByDateBetweenAndIdGreaterThan(LocalDate from, LocalDate to, long id, Limit limit);
 }
@@ -1,5 +1,12 @@
 package com.example.demo.repositories;
 
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+import com.example.demo.audit.AuditEvent;
+import com.example.demo.models.Log;
+import com.example.demo.projections.LogEntry;
+
 /**
  * Another fragment interface
  * 
@@ -8,12 +15,61 @@ package com.example.demo.repositories;
  */
 public interface LogRepositoryCustom {
 
+	/**
+	 * Free text, stored as an AuditEvent.TEXT log. Prefer log(event, parameters) for messages that repeat.
+	 */
 	void log(String message);
 
+	void log(AuditEvent event, Object... parameters);
+
+	/**
+	 * Audit entry that must survive a rollback of the caller. Goes through log() unless an
+	 * AsyncLogWriter is configured, in which case it is queued and written in batches.
+	 */
+	void audit(String message);
+
+	void audit(AuditEvent event, Object... parameters);
+
 	void addSeparateLogsNotSupported();
 	
 	void addSeparateLogsSupports();
 	
     void showLogs();
 
+    /**
+     * Sends every log to the sink, reading them in keyset pages so memory does not depend on the
+     * table size. Each page is its own short read, so like showLogs() it runs outside transactions.
+     */
+    void showLogs(Consumer<? super Log> sink);
+
+    void showLogs(LocalDate from, LocalDate to, Consumer<? super Log> sink);
+
+    /**
+     * Same pages as showLogs(sink), read as LogEntry values: no entity is instantiated and the persistence
+     * context stays empty. Use it when the logs are only read.
+     */
+    void showLogEntries(Consumer<? super LogEntry> sink);
+
+    void showLogEntries(LocalDate from, LocalDate to, Consumer<? super LogEntry> sink);
+
+    /**
+     * Same as showLogs(sink) but over a single database cursor in one read-only transaction.
+     * Returns how many logs were sent to the sink.
+     */
+    long streamLogs(Consumer<? super Log> sink);
+
+    long streamLogs(LocalDate from, LocalDate to, Consumer<? super Log> sink);
+
+    /**
+     * Deletes the logs dated before cutoff with a single DELETE statement, flushing pending changes first and
+     * clearing the persistence context afterwards. On a partitioned table LogPartitionManager.dropPartitionsBefore()
+     * is cheaper still. Returns how many logs were deleted.
+     */
+    int bulkDeleteByDateBefore(LocalDate cutoff);
+
+    /**
+     * Empties the table, every partition included, with TRUNCATE.
+     */
+    void truncate();
+
 }
@@ -1,10 +1,27 @@
 package com.example.demo.repositories;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import com.example.demo.audit.AsyncLogWriter;
+import com.example.demo.audit.AuditEvent;
 import com.example.demo.models.*;
+import com.example.demo.projections.LogEntry;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 /**
  * When we inject a LogRepository bean, Spring Data will detect that LogRepository implements 
@@ -17,15 +34,48 @@ import com.example.demo.models.*;
  */
 public class LogRepositoryImpl implements LogRepositoryCustom {
 
+    private static final int PAGE_SIZE = Integer.parseInt(LogRepository.FETCH_SIZE);
+
 	@Autowired
     private LogRepository logRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectProvider<AsyncLogWriter> asyncLogWriter;
+
     @Override
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void log(String message) {
         logRepository.save(new Log(message));
     }
 
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void log(AuditEvent event, Object... parameters) {
+        logRepository.save(new Log(event, parameters));
+    }
+
+    /**
+     * Not transactional on purpose: with an AsyncLogWriter the caller's transaction is neither
+     * suspended nor joined, the message just goes on the queue.
+     */
+    @Override
+    public void audit(String message) {
+        audit(AuditEvent.TEXT, message);
+    }
+
+    @Override
+    public void audit(AuditEvent event, Object... parameters) {
+        AsyncLogWriter writer = asyncLogWriter.getIfAvailable();
+        if (writer != null) {
+            writer.log(event, parameters);
+        } else {
+            logRepository.log(event, parameters);
+        }
+    }
+
     @Override
     @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void addSeparateLogsNotSupported() {
@@ -46,6 +96,101 @@ public class LogRepositoryImpl implements LogRepositoryCustom {
     @Transactional(propagation = Propagation.NEVER)
     public void showLogs() {
         System.out.println("Current log:");
-        logRepository.findAll().forEach(System.out::println);
+        showLogs(System.out::println);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NEVER)
+    public void showLogs(Consumer<? super Log> sink) {
+        page(lastId -> logRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(PAGE_SIZE)), Log::getId, sink);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NEVER)
+    public void showLogs(LocalDate from, LocalDate to, Consumer<? super Log> sink) {
+        page(lastId -> logRepository.findByDateBetweenAndIdGreaterThanOrderByIdAsc(from, to, lastId, Limit.of(PAGE_SIZE)), Log::getId, sink);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NEVER)
+    public void showLogEntries(Consumer<? super LogEntry> sink) {
+        page(lastId -> logRepository.findEntriesByIdGreaterThan(lastId, Limit.of(PAGE_SIZE)), LogEntry::id, sink);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NEVER)
+    public void showLogEntries(LocalDate from, LocalDate to, Consumer<? super LogEntry> sink) {
+        page(lastId -> logRepository.findEntriesByDateBetweenAndIdGreaterThan(from, to, lastId, Limit.of(PAGE_SIZE)), LogEntry::id, sink);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long streamLogs(Consumer<? super Log> sink) {
+        try (Stream<Log> logs = logRepository.streamAll()) {
+            return drain(logs, sink);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long streamLogs(LocalDate from, LocalDate to, Consumer<? super Log> sink) {
+        try (Stream<Log> logs = logRepository.streamByDateBetweenOrderByIdAsc(from, to)) {
+            return drain(logs, sink);
+        }
+    }
+
+    @Override
+    @Transactional
+    public int bulkDeleteByDateBefore(LocalDate cutoff) {
+        entityManager.flush();
+        int deleted = entityManager.createQuery("delete from Log l where l.date < :cutoff")
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+        entityManager.clear();
+        return deleted;
+    }
+
+    @Override
+    @Transactional
+    public void truncate() {
+        entityManager.flush();
+        entityManager.createNativeQuery("truncate table log")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Log.class)
+                .executeUpdate();
+        entityManager.clear();
+    }
+
+    private static <T> void page(LongFunction<List<T>> nextPage, ToLongFunction<T> id, Consumer<? super T> sink) {
+        long lastId = 0;
+        List<T> page;
+        do {
+            page = nextPage.apply(lastId);
+            page.forEach(sink);
+            if (!page.isEmpty()) {
+                lastId = id.applyAsLong(page.get(page.size() - 1));
+            }
+        } while (page.size() == PAGE_SIZE);
+    }
+
+    /**
+     * The logs are loaded read-only, so there are no snapshots, but the persistence context still
+     * keeps a reference to each one, so it would grow with the cursor. When the transaction is our own the
+     * context holds nothing else, and it is cleared every page; joined to the caller's transaction only the
+     * logs passed to the sink are detached, whatever the caller loaded stays managed.
+     */
+    private long drain(Stream<Log> logs, Consumer<? super Log> sink) {
+        boolean ownContext = TransactionAspectSupport.currentTransactionStatus().isNewTransaction();
+        long count = 0;
+        for (Log log : (Iterable<Log>) logs::iterator) {
+            sink.accept(log);
+            count++;
+            if (!ownContext) {
+                entityManager.detach(log);
+            } else if (count % PAGE_SIZE == 0) {
+                entityManager.clear();
+            }
+        }
+        return count;
     }
 }
@@ -0,0 +1,102 @@
+package com.example.demo.retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.OptimisticLockException;
+
+/**
+ * Runs a unit of work in its own transaction and, when it fails because of a @Version conflict,
+ * runs the whole transaction again. A retry has to start from scratch (re-read the entity, re-apply
+ * the change), which is why the transaction is opened here and not by the caller: each attempt is a
+ * REQUIRES_NEW transaction, and the repository methods called inside join it.
+ *
+ * Between attempts the thread sleeps a random time between zero and an exponentially growing bound
+ * (full jitter), so the transactions that collided do not collide again in lockstep.
+ *
+ * @author peter
+ *
+ */
+public class OptimisticLockRetryTemplate {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public OptimisticLockRetryTemplate(PlatformTransactionManager transactionManager, int maxAttempts,
+                                       Duration baseBackoff, Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        executions.incrementAndGet();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                conflicts.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    failures.incrementAndGet();
+                    throw e;
+                }
+                retries.incrementAndGet();
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    public void executeWithoutResult(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private void backOff(int attempt, RuntimeException conflict) {
+        long bound = Math.min(maxBackoffNanos, baseBackoffNanos << Math.min(attempt - 1, 30));
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.incrementAndGet();
+            throw conflict;
+        }
+    }
+
+    /** Units of work submitted. */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /** Attempts that failed on a version conflict, retried or not. */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /** Units of work given up after maxAttempts conflicts. */
+    public long getFailures() {
+        return failures.get();
+    }
+}
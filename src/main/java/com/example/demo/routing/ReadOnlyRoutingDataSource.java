@@ -0,0 +1,125 @@
+package com.example.demo.routing;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends the connections of read-only transactions (@Transactional(readOnly = true), and the query methods of
+ * the repositories, which Spring Data runs read-only) to a replica, and everything else to the primary.
+ * When the replica cannot hand out a connection the read goes to the primary, and {@link #getFallbacks()}
+ * counts it.
+ *
+ * A replica that failed is not asked again for the next replicaRetryInterval (10 seconds by default): the
+ * reads meanwhile go straight to the primary, rather than each waiting for the replica pool to give up.
+ * Give the replica pool a short connectionTimeout too, it bounds the wait of the read that finds it down.
+ *
+ * The transaction manager borrows the connection when the transaction begins, before the read-only flag is
+ * bound to the thread, so the routing only works behind a {@link LazyConnectionDataSourceProxy}, which
+ * delays it to the first statement.
+ *
+ * A read-only transaction that starts inside a read-write one (REQUIRED) joins it and stays on the primary:
+ * the duplicate check of addItem() always sees the rows of its own transaction.
+ *
+ * @author peter
+ *
+ */
+public class ReadOnlyRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final DataSource primary;
+    private final AtomicLong fallbacks = new AtomicLong();
+    private volatile long replicaRetryNanos = TimeUnit.SECONDS.toNanos(10);
+    private volatile boolean replicaDown;
+    private volatile long replicaDownSince;
+
+    public ReadOnlyRoutingDataSource(DataSource primary, DataSource replica) {
+        this.primary = primary;
+        setTargetDataSources(Map.of(Boolean.FALSE, primary, Boolean.TRUE, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * How long the reads stay on the primary after the replica failed to give a connection.
+     */
+    public void setReplicaRetryInterval(Duration replicaRetryInterval) {
+        this.replicaRetryNanos = replicaRetryInterval.toNanos();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    @Override
+    protected DataSource determineTargetDataSource() {
+        DataSource target = super.determineTargetDataSource();
+        if (target != primary && replicaDown && System.nanoTime() - replicaDownSince < replicaRetryNanos) {
+            fallbacks.incrementAndGet();
+            return primary;
+        }
+        return target;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        try {
+            Connection connection = target.getConnection();
+            if (target != primary) {
+                replicaDown = false;
+            }
+            return connection;
+        } catch (SQLException e) {
+            if (target == primary) {
+                throw e;
+            }
+            replicaFailed();
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DataSource target = determineTargetDataSource();
+        try {
+            Connection connection = target.getConnection(username, password);
+            if (target != primary) {
+                replicaDown = false;
+            }
+            return connection;
+        } catch (SQLException e) {
+            if (target == primary) {
+                throw e;
+            }
+            replicaFailed();
+            return primary.getConnection(username, password);
+        }
+    }
+
+    private void replicaFailed() {
+        replicaDownSince = System.nanoTime();
+        replicaDown = true;
+        fallbacks.incrementAndGet();
+    }
+
+    /**
+     * Whether the reads are kept on the primary because the replica failed less than replicaRetryInterval ago.
+     */
+    public boolean isReplicaDown() {
+        return replicaDown && System.nanoTime() - replicaDownSince < replicaRetryNanos;
+    }
+
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.savepoints;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.NestedTransactionNotSupportedException;
+import org.springframework.transaction.SavepointManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionSystemException;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+
+/**
+ * A HibernateJpaDialect that gives JpaTransactionManager the savepoints it needs for NESTED propagation
+ * (with setNestedTransactionAllowed(true)). The plain HibernateJpaDialect has none, so NESTED fails with
+ * a NestedTransactionNotSupportedException. The savepoints are set on the JDBC connection of the
+ * Session, so a nested transaction takes no second connection, unlike REQUIRES_NEW.
+ *
+ * JPA knows nothing of savepoints, so the persistence context is kept in step by hand. It is flushed
+ * before each savepoint, so the savepoint holds the changes made before it. It is cleared when rolling
+ * back to one, because it may hold entities the database no longer has. An entity loaded before the
+ * nested transaction is detached as well, so load it again to change it afterwards.
+ *
+ * A flush that fails inside the nested transaction is a different case: Hibernate marks the whole
+ * transaction rollback-only, and rolling back to the savepoint does not clear that. So does a REQUIRED
+ * method that joins the nested transaction and throws, since JpaTransactionManager marks the
+ * EntityTransaction itself. The method that may fail should therefore be the NESTED one.
+ *
+ * @author peter
+ *
+ */
+public class SavepointHibernateJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException, TransactionException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        return new SavepointTransactionData(transactionData, entityManager.unwrap(SessionImplementor.class));
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        super.cleanupTransaction(((SavepointTransactionData) transactionData).transactionData);
+    }
+
+    private static class SavepointTransactionData implements SavepointManager {
+
+        private final Object transactionData;
+        private final SessionImplementor session;
+        private int savepoints;
+
+        SavepointTransactionData(Object transactionData, SessionImplementor session) {
+            this.transactionData = transactionData;
+            this.session = session;
+        }
+
+        @Override
+        public Object createSavepoint() throws TransactionException {
+            session.flush();
+            try {
+                return connection().setSavepoint("SAVEPOINT_" + ++savepoints);
+            } catch (SQLException e) {
+                throw new CannotCreateTransactionException("Could not create JDBC savepoint", e);
+            }
+        }
+
+        @Override
+        public void rollbackToSavepoint(Object savepoint) throws TransactionException {
+            session.clear();
+            try {
+                connection().rollback((Savepoint) savepoint);
+            } catch (SQLException e) {
+                throw new TransactionSystemException("Could not roll back to JDBC savepoint", e);
+            }
+        }
+
+        @Override
+        public void releaseSavepoint(Object savepoint) throws TransactionException {
+            // the changes of the nested transaction go to the database before the savepoint is gone
+            session.flush();
+            try {
+                connection().releaseSavepoint((Savepoint) savepoint);
+            } catch (SQLException e) {
+                // not every driver releases explicitly, the savepoint goes with the transaction anyway
+            }
+        }
+
+        private Connection connection() {
+            if (!session.isConnected()) {
+                throw new NestedTransactionNotSupportedException("The Session has no JDBC connection");
+            }
+            return session.getJdbcCoordinator().getLogicalConnection().getPhysicalConnection();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo.staging;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.audit.BackpressurePolicy;
+import com.example.demo.batching.BatchingWriter;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ItemRepository;
+
+/**
+ * Opt-in write-behind in front of ItemRepository.addItem(). Instead of one transaction per item, add() stages
+ * the item in memory and returns a future; a background thread group-commits the staged items in transactions
+ * of up to batchSize items, or whatever arrived within flushInterval, through ItemRepository.addItems().
+ * The future completes with the stored item once its transaction has committed, or fails with a
+ * DuplicateItemNameException.
+ *
+ * Names are unique against the buffer, checked when the item is staged, and against the database, checked by
+ * addItems() with SKIP inside the batch transaction, one query per chunk: the items it left without an id
+ * are the duplicates. Should another transaction store one of the names in between, the unique index rolls
+ * the whole batch back, and its items are retried one transaction each so only the duplicate fails.
+ * Whatever is still staged is written when the bean is destroyed; the queue, the writer thread and the
+ * shutdown come from BatchingWriter.
+ *
+ * @author peter
+ *
+ */
+public class ItemStagingBuffer extends BatchingWriter<ItemStagingBuffer.Staged> {
+
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Staged> staged = new ConcurrentHashMap<>();
+
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retriedBatches = new AtomicLong();
+
+    public ItemStagingBuffer(ItemRepository itemRepository, PlatformTransactionManager transactionManager,
+                             int capacity, int batchSize, Duration flushInterval, BackpressurePolicy backpressurePolicy) {
+        super("item-staging-buffer", capacity, batchSize, flushInterval, backpressurePolicy);
+        this.itemRepository = itemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Stages a new item. A name already staged fails right away; when the buffer is full the backpressure
+     * policy applies, DROP failing the future with a RejectedExecutionException. Once the buffer is shutting
+     * down the item is written right away.
+     */
+    public CompletableFuture<Item> add(String name, LocalDate creationDate) {
+        Staged item = new Staged(name, creationDate);
+        if (staged.putIfAbsent(name, item) != null) {
+            duplicates.incrementAndGet();
+            return CompletableFuture.failedFuture(duplicateName(name));
+        }
+        if (!enqueue(item)) {
+            writeNow(item);
+        }
+        return item.future;
+    }
+
+    @Override
+    protected void dropped(Staged item) {
+        staged.remove(item.name, item);
+        rejected.incrementAndGet();
+        item.future.completeExceptionally(new RejectedExecutionException("Item staging buffer is full"));
+    }
+
+    @Override
+    protected void write(List<Staged> batch) {
+        List<Item> items = batch.stream().map(Staged::toItem).toList();
+        try {
+            transactionTemplate.executeWithoutResult(status -> itemRepository.addItems(items, DuplicatePolicy.SKIP));
+            for (int i = 0; i < batch.size(); i++) {
+                Item item = items.get(i);
+                if (item.getId() != null) {
+                    complete(batch.get(i), item);
+                } else {
+                    // skipped, the name is in the database already
+                    fail(batch.get(i), duplicateName(item.getName()));
+                }
+            }
+        } catch (RuntimeException e) {
+            // a name stored concurrently, or a failure of the batch: isolate it with one transaction per item
+            retriedBatches.incrementAndGet();
+            batch.forEach(this::writeNow);
+        }
+    }
+
+    private void writeNow(Staged item) {
+        Item stored = item.toItem();
+        try {
+            transactionTemplate.executeWithoutResult(status -> itemRepository.addItems(List.of(stored), DuplicatePolicy.FAIL));
+            complete(item, stored);
+        } catch (DuplicateItemNameException e) {
+            fail(item, e);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            staged.remove(item.name, item);
+            item.future.completeExceptionally(e);
+        }
+    }
+
+    private void complete(Staged item, Item stored) {
+        committed.incrementAndGet();
+        staged.remove(item.name, item);
+        item.future.complete(stored);
+    }
+
+    private void fail(Staged item, DuplicateItemNameException e) {
+        duplicates.incrementAndGet();
+        staged.remove(item.name, item);
+        item.future.completeExceptionally(e);
+    }
+
+    private static DuplicateItemNameException duplicateName(String name) {
+        return new DuplicateItemNameException("Item with name " + name + " already exists");
+    }
+
+    public int getStagedCount() {
+        return staged.size();
+    }
+
+    public long getCommitted() {
+        return committed.get();
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Batches that failed as a whole and were written again one item at a time.
+     */
+    public long getRetriedBatches() {
+        return retriedBatches.get();
+    }
+
+    static final class Staged {
+
+        private final String name;
+        private final LocalDate creationDate;
+        private final CompletableFuture<Item> future = new CompletableFuture<>();
+
+        private Staged(String name, LocalDate creationDate) {
+            this.name = name;
+            this.creationDate = creationDate;
+        }
+
+        private Item toItem() {
+            return new Item(name, creationDate);
+        }
+    }
+}
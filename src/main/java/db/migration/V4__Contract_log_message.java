@@ -0,0 +1,55 @@
+package db.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * The contract step of V2: copies the message of the logs without parameters into parameters, as free
+ * text (event 0), then drops the message column. Those are the logs written before the events and, until
+ * this runs, every TEXT log, which Log writes to message only.
+ *
+ * Only run it once no instance of the version before V2 is left, since those still write message; until
+ * then spring.flyway.target holds the schema at version 3. Raise it together with removing
+ * Log.legacyMessage and the reads of the column.
+ *
+ * The copy runs in batches of BATCH_SIZE rows, each committed on its own, so it neither rewrites the whole
+ * log table in one transaction nor holds its locks for that long. An interrupted run resumes where it
+ * stopped.
+ *
+ * @author peter
+ *
+ */
+public class V4__Contract_log_message extends BaseJavaMigration {
+
+    static final int BATCH_SIZE = 10_000;
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try (PreparedStatement copy = connection.prepareStatement(
+                "update log set parameters = message where id in (select id from log"
+                        + " where parameters is null and message is not null fetch first ? rows only)");
+             Statement statement = connection.createStatement()) {
+            copy.setInt(1, BATCH_SIZE);
+            int copied;
+            do {
+                copied = copy.executeUpdate();
+            } while (copied == BATCH_SIZE);
+            statement.execute("alter table log drop column message");
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+-- the schema hbm2ddl generates for Item and Log; with schema.migrations Hibernate only validates it
+
+create sequence item_seq start with 1 increment by 50;
+create sequence log_seq start with 1 increment by 50;
+
+create table item (
+    id bigint not null,
+    version bigint not null,
+    name varchar(255) not null,
+    creationDate date,
+    buyNowPrice numeric(38,2),
+    primary key (id),
+    constraint item_name_key unique (name)
+);
+
+-- LogPartitionManager turns it into a table partitioned by month on start
+create table log (
+    id bigint not null,
+    message varchar(255),
+    date date not null,
+    primary key (id)
+);
+
+create index log_date_idx on log (date);
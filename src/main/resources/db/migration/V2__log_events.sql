@@ -0,0 +1,20 @@
+-- logs are stored as the code of their AuditEvent and the parameters of the message, the templates are
+-- kept once in log_template
+
+create table log_template (
+    id smallint not null,
+    template varchar(255),
+    primary key (id)
+);
+
+insert into log_template (id, template) values (0, '{0}');
+insert into log_template (id, template) values (1, 'adding item with name {0}');
+insert into log_template (id, template) values (2, 'adding log in method with no rollback for item {0}');
+insert into log_template (id, template) values (3, 'adding batch of {0} items starting with name {1}');
+
+-- expand only: message stays, and the rendered text is still written there next to event and parameters,
+-- so the instances of the previous version keep reading every log during a rolling deploy; the rows only
+-- shrink once V4 has run. Free-text logs (event 0) are written to message alone. The logs without
+-- parameters are read from message, as free text, until V4 copies them over in batches and drops the column.
+alter table log add column event smallint default 0 not null;
+alter table log add column parameters varchar(255);
@@ -0,0 +1,9 @@
+-- progress of the ItemFileImporter workers, so that an interrupted import resumes where it stopped
+
+create table import_checkpoint (
+    file varchar(1024) not null,
+    worker integer not null,
+    workers integer not null,
+    committedOffset bigint not null,
+    primary key (file, worker)
+);
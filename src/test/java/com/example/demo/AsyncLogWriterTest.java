@@ -0,0 +1,367 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+
+import com.example.demo.audit.AsyncLogWriter;
+import com.example.demo.audit.BackpressurePolicy;
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {AsyncLogWriterTest.AsyncAuditConfiguration.class})
+public class AsyncLogWriterTest {
+
+    @Configuration
+    @Import(SpringDataConfiguration.class)
+    static class AsyncAuditConfiguration {
+
+        @Bean
+        public AsyncLogWriter asyncLogWriter(LogRepository logRepository, PlatformTransactionManager transactionManager,
+                                             MeterRegistry meterRegistry) {
+            AsyncLogWriter writer = new AsyncLogWriter(logRepository, transactionManager, 1000, 50, Duration.ofMillis(20), BackpressurePolicy.BLOCK);
+            writer.bindTo(meterRegistry);
+            return writer;
+        }
+    }
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AsyncLogWriter asyncLogWriter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+    }
+
+    /**
+     * Igual que requiresNew() en TransactionPropagationTest, pero el log lo escribe el AsyncLogWriter en
+     * segundo plano: sigue sobreviviendo al rollback del addItem() duplicado.
+     */
+    @Test
+    public void logSurvivesRollback() throws InterruptedException {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 5, 1));
+        itemRepository.addItem("Item2", LocalDate.of(2022, 3, 1));
+
+        assertThrows(DuplicateItemNameException.class, () -> itemRepository.addItem("Item2", LocalDate.of(2016, 3, 1)));
+
+        awaitCount(3, logRepository::count);
+        assertAll(
+                () -> assertEquals(3, logRepository.count()),
+                () -> assertEquals(2, itemRepository.count()),
+                () -> assertEquals(0, asyncLogWriter.getQueueDepth()),
+                () -> assertEquals(0, meterRegistry.get("audit.queue.depth").gauge().value()),
+                () -> assertEquals(asyncLogWriter.getWritten(),
+                        meterRegistry.get("audit.logs").tag("outcome", "written").functionCounter().count())
+        );
+    }
+
+    /**
+     * Writer sin arrancar (no es un bean), así la cola se llena: con DROP lo que no entra se descarta,
+     * y al destruirlo se escribe lo que quedaba en la cola.
+     */
+    @Test
+    public void dropWhenFull() throws InterruptedException {
+        AsyncLogWriter writer = new AsyncLogWriter(logRepository, transactionManager, 2, 50, Duration.ofMillis(20), BackpressurePolicy.DROP);
+        for (int i = 0; i < 5; i++) {
+            writer.log("drop " + i);
+        }
+        assertAll(
+                () -> assertEquals(2, writer.getQueueDepth()),
+                () -> assertEquals(3, writer.getDropped()),
+                () -> assertEquals(0, logRepository.count())
+        );
+
+        writer.destroy();
+        assertAll(
+                () -> assertEquals(2, logRepository.count()),
+                () -> assertEquals(2, writer.getWritten()),
+                () -> assertEquals(1, writer.getFlushes())
+        );
+    }
+
+    /**
+     * Con CALLER_RUNS lo que no entra en la cola lo escribe el mismo hilo que llama, con REQUIRES_NEW.
+     */
+    @Test
+    public void callerRunsWhenFull() throws InterruptedException {
+        AsyncLogWriter writer = new AsyncLogWriter(logRepository, transactionManager, 2, 50, Duration.ofMillis(20), BackpressurePolicy.CALLER_RUNS);
+        for (int i = 0; i < 5; i++) {
+            writer.log("caller runs " + i);
+        }
+        assertEquals(3, logRepository.count());
+
+        writer.destroy();
+        assertAll(
+                () -> assertEquals(5, logRepository.count()),
+                () -> assertEquals(0, writer.getDropped())
+        );
+    }
+
+    /**
+     * Un lote que falla se vuelve a intentar tras una espera, y no se pierde si la base de datos vuelve a tiempo.
+     */
+    @Test
+    public void retryFailedBatch() throws InterruptedException {
+        AsyncLogWriter writer = new AsyncLogWriter(logRepository, failing(new AtomicInteger(1)), 10, 50, Duration.ofMillis(20), BackpressurePolicy.BLOCK);
+        writer.setRetry(3, Duration.ofMillis(10));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        writer.bindTo(registry);
+        for (int i = 0; i < 3; i++) {
+            writer.log("retry " + i);
+        }
+
+        writer.destroy();
+        assertAll(
+                () -> assertEquals(3, logRepository.count()),
+                () -> assertEquals(1, writer.getRetries()),
+                () -> assertEquals(0, writer.getFailed()),
+                () -> assertEquals(3, registry.get("audit.logs").tag("outcome", "written").functionCounter().count()),
+                () -> assertEquals(1, registry.get("audit.flush.retries").functionCounter().count()),
+                () -> assertEquals(1, registry.get("audit.flush").functionTimer().count()),
+                () -> assertTrue(registry.get("audit.flush").functionTimer().totalTime(TimeUnit.MILLISECONDS) >= 10),
+                () -> assertTrue(registry.get("audit.flush.max").gauge().value() >= 0.01)
+        );
+    }
+
+    /**
+     * Si el commit falla los logs ya tienen id; el reintento inserta copias en vez de hacer merge de los mismos
+     * objetos, que costaría un select por log.
+     */
+    @Test
+    public void retryAfterFailedCommitInserts() throws InterruptedException {
+        AsyncLogWriter writer = new AsyncLogWriter(logRepository, failingCommit(new AtomicInteger(1)), 10, 50,
+                Duration.ofMillis(20), BackpressurePolicy.BLOCK);
+        writer.setRetry(3, Duration.ofMillis(10));
+        for (int i = 0; i < 3; i++) {
+            writer.log("retry commit " + i);
+        }
+        AtomicInteger selects = new AtomicInteger();
+        SqlStatementCounter.setListener(sql -> {
+            if (sql.startsWith("select") && sql.toLowerCase().contains(" from log ")) {
+                selects.incrementAndGet();
+            }
+        });
+        try {
+            writer.destroy();
+        } finally {
+            SqlStatementCounter.setListener(null);
+        }
+        assertAll(
+                () -> assertEquals(3, logRepository.count()),
+                () -> assertEquals(1, writer.getRetries()),
+                () -> assertEquals(0, selects.get())
+        );
+    }
+
+    /**
+     * Agotados los intentos, el lote se da por perdido y se cuenta como fallido.
+     */
+    @Test
+    public void failedBatchGivenUp() throws InterruptedException {
+        AsyncLogWriter writer = new AsyncLogWriter(logRepository, failing(new AtomicInteger(Integer.MAX_VALUE)), 10, 50,
+                Duration.ofMillis(20), BackpressurePolicy.BLOCK);
+        writer.setRetry(3, Duration.ofMillis(10));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        writer.bindTo(registry);
+        for (int i = 0; i < 3; i++) {
+            writer.log("given up " + i);
+        }
+
+        writer.destroy();
+        assertAll(
+                () -> assertEquals(0, logRepository.count()),
+                () -> assertEquals(2, writer.getRetries()),
+                () -> assertEquals(3, writer.getFailed()),
+                () -> assertEquals(3, registry.get("audit.logs").tag("outcome", "failed").functionCounter().count())
+        );
+    }
+
+    /**
+     * Los hilos siguen escribiendo logs mientras se cierra el writer: cada uno acaba en la cola antes del último
+     * vaciado, o se escribe en el momento, ninguno se queda en la cola.
+     */
+    @Test
+    public void noLogLostOnShutdown() throws InterruptedException {
+        AsyncLogWriter writer = new AsyncLogWriter(logRepository, transactionManager, 100, 50, Duration.ofMillis(5), BackpressurePolicy.BLOCK);
+        writer.afterPropertiesSet();
+        AtomicInteger logged = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread producer = new Thread(() -> {
+                while (!stop.get()) {
+                    writer.log("shutdown " + logged.get());
+                    logged.incrementAndGet();
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        awaitCount(500, logged::get);
+
+        writer.destroy();
+        // tras el cierre los logs se escriben en el momento
+        long closedAt = logged.get();
+        awaitCount(closedAt + 20, logged::get);
+        stop.set(true);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertAll(
+                () -> assertEquals(logged.get(), logRepository.count()),
+                () -> assertEquals(logged.get(), writer.getWritten()),
+                () -> assertEquals(0, writer.getQueueDepth())
+        );
+    }
+
+    /**
+     * Si el hilo del writer muere con la cola llena, quien espera sitio con BLOCK escribe el log él mismo, y
+     * destroy() no se queda esperando a que lo suelte.
+     */
+    @Test
+    public void blockedCallerGivesUpOnDeadWriter() {
+        AtomicInteger crashes = new AtomicInteger(1);
+        AsyncLogWriter writer = new AsyncLogWriter(logRepository, crashing(crashes), 1, 50, Duration.ofMillis(5), BackpressurePolicy.BLOCK);
+        writer.afterPropertiesSet();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            writer.log("lost with the writer");
+            awaitCount(1, () -> 1 - crashes.get());
+            Thread.sleep(50);
+            writer.log("queued");
+            writer.log("written by the caller");
+            writer.destroy();
+        });
+        assertAll(
+                () -> assertEquals(2, logRepository.count()),
+                () -> assertEquals(0, writer.getQueueDepth())
+        );
+    }
+
+    /**
+     * Un gestor de transacciones que mata el hilo que la pide, como un Error, mientras queden fallos.
+     */
+    private PlatformTransactionManager crashing(AtomicInteger crashes) {
+        return new PlatformTransactionManager() {
+
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                if (crashes.getAndDecrement() > 0) {
+                    throw new AssertionError("writer thread crashed");
+                }
+                return transactionManager.getTransaction(definition);
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                transactionManager.commit(status);
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                transactionManager.rollback(status);
+            }
+        };
+    }
+
+    /**
+     * Un gestor de transacciones que deshace en vez de confirmar mientras queden fallos, cuando los logs ya
+     * se han insertado con su id.
+     */
+    private PlatformTransactionManager failingCommit(AtomicInteger failures) {
+        return new PlatformTransactionManager() {
+
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return transactionManager.getTransaction(definition);
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                if (failures.getAndDecrement() > 0) {
+                    transactionManager.rollback(status);
+                    throw new TransactionSystemException("commit failed");
+                }
+                transactionManager.commit(status);
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                transactionManager.rollback(status);
+            }
+        };
+    }
+
+    /**
+     * Un gestor de transacciones que no puede empezar ninguna mientras queden fallos.
+     */
+    private PlatformTransactionManager failing(AtomicInteger failures) {
+        return new PlatformTransactionManager() {
+
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new CannotCreateTransactionException("database down");
+                }
+                return transactionManager.getTransaction(definition);
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                transactionManager.commit(status);
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                transactionManager.rollback(status);
+            }
+        };
+    }
+
+    private static void awaitCount(long expected, LongSupplier count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (count.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
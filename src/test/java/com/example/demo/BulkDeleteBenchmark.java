@@ -0,0 +1,64 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+/**
+ * Emptying 100k items and 100k logs with deleteAll(), with a single bulk DELETE and with TRUNCATE.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=BulkDeleteBenchmark
+ */
+public class BulkDeleteBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2022, 1, 1);
+    private static final int DAYS = 1_000;
+
+    @Test
+    public void deleteAllBulkDeleteTruncate() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SpringDataConfiguration.class)) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+            ItemRepository itemRepository = context.getBean(ItemRepository.class);
+            LogRepository logRepository = context.getBean(LogRepository.class);
+            LocalDate lastDay = FIRST_DAY.plusDays(DAYS);
+
+            seed(jdbcTemplate);
+            time("item deleteAll()", itemRepository::deleteAll);
+            time("log deleteAll()", logRepository::deleteAll);
+
+            seed(jdbcTemplate);
+            time("item bulkDeleteByCreationDateBetween()", () -> itemRepository.bulkDeleteByCreationDateBetween(FIRST_DAY, lastDay));
+            time("log bulkDeleteByDateBefore()", () -> logRepository.bulkDeleteByDateBefore(lastDay));
+
+            seed(jdbcTemplate);
+            time("item truncate()", itemRepository::truncate);
+            time("log truncate()", logRepository::truncate);
+        }
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("truncate table item, log");
+        // negative ids never collide with the generated ones
+        jdbcTemplate.update("insert into item (id, version, name, creationDate) "
+                + "select -g, 0, 'seed-' || g, ? + (g % ?) from generate_series(1, ?) g", FIRST_DAY, DAYS, ROWS);
+        jdbcTemplate.update("insert into log (id, event, parameters, date) "
+                + "select -g, 0, 'log ' || g, ? + (g % ?) from generate_series(1, ?) g", FIRST_DAY, DAYS, ROWS);
+        jdbcTemplate.execute("analyze item");
+        jdbcTemplate.execute("analyze log");
+    }
+
+    private static void time(String operation, Runnable delete) {
+        long start = System.nanoTime();
+        delete.run();
+        System.out.println(operation + ": " + (System.nanoTime() - start) / 1_000_000 + "ms for " + ROWS + " rows");
+    }
+}
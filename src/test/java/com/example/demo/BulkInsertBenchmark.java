@@ -0,0 +1,64 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.example.demo.configuration.*;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ItemRepository;
+
+/**
+ * Throughput of a looped addItem() against one batched addItems() call for the same items.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=BulkInsertBenchmark
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class BulkInsertBenchmark {
+
+    private static final int ITEMS = 10_000;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    @AfterEach
+    public void clean() {
+        new JdbcTemplate(dataSource).execute("truncate table item, log");
+    }
+
+    @Test
+    public void loopVersusBatch() {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITEMS; i++) {
+            itemRepository.addItem("loop-" + i, LocalDate.now());
+        }
+        report("addItem loop", System.nanoTime() - start);
+
+        List<Item> items = IntStream.range(0, ITEMS).mapToObj(i -> new Item("batch-" + i, LocalDate.now())).toList();
+        start = System.nanoTime();
+        itemRepository.addItems(items, DuplicatePolicy.FAIL);
+        report("addItems", System.nanoTime() - start);
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.println(name + ": " + ITEMS + " items in " + nanos / 1_000_000 + "ms, "
+                + (long) (ITEMS / (nanos / 1e9)) + " items/s");
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.demo.configuration.*;
+import com.example.demo.repositories.ItemRepository;
+
+/**
+ * Concurrent addItem() calls against an unpooled DriverManagerDataSource and against the pooled
+ * HikariDataSource of SpringDataConfiguration. Each addItem() uses two connections, one for the
+ * item and one for the REQUIRES_NEW log.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=ConnectionPoolBenchmark
+ */
+public class ConnectionPoolBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 250;
+
+    @Configuration
+    static class UnpooledDataConfiguration extends SpringDataConfiguration {
+
+        @Bean
+        @Override
+        public DataSource dataSource() {
+            return new DriverManagerDataSource(url, username, password);
+        }
+    }
+
+    @Test
+    public void unpooledVersusPooled() throws Exception {
+        run("unpooled", UnpooledDataConfiguration.class);
+        run("pooled", SpringDataConfiguration.class);
+    }
+
+    private static void run(String name, Class<?> configuration) throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(configuration)) {
+            ItemRepository itemRepository = context.getBean(ItemRepository.class);
+            new JdbcTemplate(context.getBean(DataSource.class)).execute("truncate table item, log");
+
+            AtomicInteger sequence = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                        itemRepository.addItem(name + "-" + sequence.incrementAndGet(), LocalDate.now());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long nanos = System.nanoTime() - start;
+            executor.shutdown();
+
+            int calls = THREADS * CALLS_PER_THREAD;
+            System.out.println(name + ": " + calls + " addItem calls on " + THREADS + " threads, "
+                    + nanos / 1_000 / calls * THREADS + "us/call, " + (long) (calls / (nanos / 1e9)) + " calls/s");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.example.demo.configuration.*;
+import com.example.demo.repositories.ItemRepository;
+
+/**
+ * Per-insert latency of addItem() while the item table grows from 1k to 1M rows.
+ * With the findByName() probe, a natural id lookup over the unique index, the numbers should stay flat.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=DuplicateCheckBenchmark
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class DuplicateCheckBenchmark {
+
+    private static final int[] TABLE_SIZES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int INSERTS = 500;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    @AfterEach
+    public void clean() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("truncate table item, log");
+    }
+
+    @Test
+    public void perInsertLatencyByTableSize() {
+        int seeded = 0;
+        for (int size : TABLE_SIZES) {
+            // negative ids never collide with the generated ones
+            jdbcTemplate.update("insert into item (id, version, name) select -g, 0, 'seed-' || g from generate_series(?, ?) g",
+                    seeded + 1, size);
+            jdbcTemplate.execute("analyze item");
+            seeded = size;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < INSERTS; i++) {
+                itemRepository.addItem("bench-" + size + "-" + i, LocalDate.now());
+            }
+            long micros = (System.nanoTime() - start) / 1_000 / INSERTS;
+            System.out.println("rows=" + size + " addItem=" + micros + "us/insert");
+        }
+    }
+}
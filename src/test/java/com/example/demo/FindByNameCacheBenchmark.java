@@ -0,0 +1,66 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ItemRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Repeated findByName() lookups over a small hot catalog, with the second-level cache turned off
+ * (-Dhibernate.second-level-cache=false) and on.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=FindByNameCacheBenchmark
+ */
+public class FindByNameCacheBenchmark {
+
+    private static final int ITEMS = 1_000;
+    private static final int LOOKUPS = 50_000;
+
+    @AfterEach
+    public void reset() {
+        System.clearProperty("hibernate.second-level-cache");
+    }
+
+    @Test
+    public void withoutAndWithCache() {
+        run(false);
+        run(true);
+    }
+
+    private static void run(boolean cache) {
+        System.setProperty("hibernate.second-level-cache", String.valueOf(cache));
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SpringDataConfiguration.class)) {
+            ItemRepository itemRepository = context.getBean(ItemRepository.class);
+            new JdbcTemplate(context.getBean(DataSource.class)).execute("truncate table item, log");
+            List<Item> items = IntStream.range(0, ITEMS).mapToObj(i -> new Item("item-" + i, LocalDate.now())).toList();
+            itemRepository.addItems(items, DuplicatePolicy.FAIL);
+
+            Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+            statistics.clear();
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                itemRepository.findByName("item-" + (i % ITEMS));
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println("cache=" + cache + ": " + nanos / LOOKUPS / 1_000 + "us/findByName, "
+                    + statistics.getPrepareStatementCount() + " statements, "
+                    + statistics.getNaturalIdCacheHitCount() + " natural id hits, "
+                    + statistics.getNaturalIdCacheMissCount() + " misses");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import com.example.demo.configuration.SqlStatementCounter;
+import com.example.demo.ids.PooledSequenceGenerator;
+import com.example.demo.models.Item;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cuántas sentencias cuestan 1000 inserts según cómo se generan los ids, cada caso con su propia
+ * SessionFactory sobre una base H2 en memoria y los mismos lotes de hibernate.jdbc.batch_size.
+ * El Item de antes usaba AUTO: una secuencia por entidad con el incremento fijo de 50 y el optimizador
+ * pooled por defecto; con PooledSequenceGenerator cada llamada reserva id.allocation_size ids, con pooled-lo.
+ */
+public class IdAllocationTest {
+
+    private static final int ITEMS = 1000;
+    private static final int BATCH_SIZE = 50;
+
+    /**
+     * El Item de antes de PooledSequenceGenerator, con el mapeo del id tal como estaba.
+     */
+    @Entity(name = "BaselineItem")
+    @Table(name = "baseline_item")
+    public static class BaselineItem {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        private String name;
+
+        private LocalDate creationDate;
+
+        public BaselineItem() {
+        }
+
+        public BaselineItem(String name, LocalDate creationDate) {
+            this.name = name;
+            this.creationDate = creationDate;
+        }
+    }
+
+    @Test
+    public void pooledSequenceAgainstBaseline() {
+        // sin hibernate.id.optimizer.pooled.preferred, como la configuración de antes
+        long baseline = insert(BaselineItem.class, PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE, null,
+                i -> new BaselineItem("Item" + i, LocalDate.of(2022, 1, 1)));
+        long baselineSequenceCalls = SqlStatementCounter.getSequenceCalls();
+
+        long pooled = insert(Item.class, PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE, "pooled-lo",
+                i -> new Item("Item" + i, LocalDate.of(2022, 1, 1)));
+        long pooledSequenceCalls = SqlStatementCounter.getSequenceCalls();
+        System.out.println(ITEMS + " inserts: " + baseline + " statements (" + baselineSequenceCalls
+                + " sequence calls) with the baseline mapping, " + pooled + " (" + pooledSequenceCalls
+                + ") with PooledSequenceGenerator");
+
+        assertAll(
+                // AUTO ya reservaba bloques de 50, el optimizador pooled pide uno más al empezar
+                () -> assertEquals(ITEMS / PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE + 1, baselineSequenceCalls),
+                () -> assertEquals(baselineSequenceCalls + 1, baseline),
+                () -> assertEquals(ITEMS / PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE, pooledSequenceCalls),
+                // las llamadas a la secuencia más el insert, preparado una vez para todos los lotes
+                () -> assertEquals(pooledSequenceCalls + 1, pooled)
+        );
+    }
+
+    /**
+     * id.allocation_size cambia los ids reservados por llamada: con 1 vuelve a ser una llamada por insert.
+     */
+    @Test
+    public void allocationSizeSetting() {
+        for (int allocationSize : new int[] {1, 10, 100}) {
+            long statements = insert(Item.class, allocationSize, "pooled-lo", i -> new Item("Item" + i, LocalDate.of(2022, 1, 1)));
+            assertAll(
+                    () -> assertEquals(ITEMS / allocationSize, SqlStatementCounter.getSequenceCalls()),
+                    () -> assertEquals(ITEMS / allocationSize + 1, statements)
+            );
+        }
+    }
+
+    /**
+     * Persiste ITEMS entidades en una transacción y devuelve las sentencias preparadas, dejando la cuenta de
+     * llamadas a la secuencia en SqlStatementCounter. Con optimizer null Hibernate elige el suyo. La
+     * SessionFactory se arranca por JPA, como en SpringDataConfiguration: es ese arranque el que lee la
+     * conexión de los ajustes jakarta.persistence.jdbc.
+     */
+    private static long insert(Class<?> entity, int allocationSize, String optimizer, IntFunction<Object> item) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:id_allocation_" + entity.getSimpleName() + allocationSize);
+        properties.put(AvailableSettings.JAKARTA_JDBC_USER, "sa");
+        properties.put(AvailableSettings.JAKARTA_JDBC_PASSWORD, "");
+        properties.put(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+        properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+        properties.put(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(BATCH_SIZE));
+        properties.put(AvailableSettings.ORDER_INSERTS, "true");
+        properties.put(AvailableSettings.STATEMENT_INSPECTOR, SqlStatementCounter.class.getName());
+        properties.put(PooledSequenceGenerator.ALLOCATION_SIZE, String.valueOf(allocationSize));
+        if (optimizer != null) {
+            properties.put(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, optimizer);
+        }
+        LocalContainerEntityManagerFactoryBean entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setPersistenceUnitName("id_allocation_" + entity.getSimpleName());
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setManagedTypes(PersistenceManagedTypes.of(entity.getName()));
+        entityManagerFactory.setJpaPropertyMap(properties);
+        entityManagerFactory.afterPropertiesSet();
+        try (SessionFactory sessionFactory = entityManagerFactory.getObject().unwrap(SessionFactory.class)) {
+            SqlStatementCounter.reset();
+            sessionFactory.inTransaction(session -> {
+                for (int i = 0; i < ITEMS; i++) {
+                    session.persist(item.apply(i));
+                }
+            });
+            return SqlStatementCounter.getStatements();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.configuration.*;
+import com.example.demo.export.ExportFormat;
+import com.example.demo.export.ItemExporter;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class ItemExporterTest {
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ItemExporter itemExporter;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+        itemExporter = new ItemExporter(itemRepository, transactionManager);
+
+        Item priced = new Item("Item, \"quoted\"", LocalDate.of(2022, 1, 1));
+        priced.setBuyNowPrice(new BigDecimal("10.50"));
+        itemRepository.addItems(List.of(priced, new Item("Item2", LocalDate.of(2022, 2, 1)), new Item("Item3")),
+                DuplicatePolicy.FAIL);
+    }
+
+    /**
+     * El CSV lleva una cabecera y una línea por item, entrecomillando sólo los campos que lo necesitan.
+     */
+    @Test
+    public void exportCsv() {
+        StringWriter out = new StringWriter();
+        assertEquals(3, itemExporter.export(out, ExportFormat.CSV));
+        assertEquals("name,creationDate,buyNowPrice\r\n"
+                + "\"Item, \"\"quoted\"\"\",2022-01-01,10.50\r\n"
+                + "Item2,2022-02-01,\r\n"
+                + "Item3,,\r\n", out.toString());
+    }
+
+    @Test
+    public void exportJson() throws Exception {
+        StringWriter out = new StringWriter();
+        assertEquals(3, itemExporter.export(out, ExportFormat.JSON));
+
+        JsonNode items = new ObjectMapper().readTree(out.toString());
+        assertAll(
+                () -> assertEquals(3, items.size()),
+                () -> assertEquals("Item, \"quoted\"", items.get(0).get("name").asText()),
+                () -> assertTrue(out.toString().contains("\"buyNowPrice\":10.50")),
+                () -> assertEquals("2022-02-01", items.get(1).get("creationDate").asText()),
+                () -> assertTrue(items.get(2).get("buyNowPrice").isNull())
+        );
+    }
+}
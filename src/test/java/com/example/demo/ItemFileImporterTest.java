@@ -0,0 +1,238 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.export.ExportFormat;
+import com.example.demo.export.ItemExporter;
+import com.example.demo.imports.ImportProgress;
+import com.example.demo.imports.ItemFileImporter;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ImportCheckpointRepository;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class ItemFileImporterTest {
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private ImportCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+        checkpointRepository.deleteAll();
+    }
+
+    private ItemFileImporter importer(int workers, int batchSize) {
+        return new ItemFileImporter(itemRepository, checkpointRepository, transactionManager, workers, batchSize);
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(directory.resolve("items.csv"), content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lo que exporta ItemExporter se importa igual, incluidos los nombres entrecomillados con comas, comillas y
+     * saltos de línea, y los campos vacíos.
+     */
+    @Test
+    public void importExport() throws Exception {
+        Item priced = new Item("Item, \"quoted\"\r\nover two lines", LocalDate.of(2022, 1, 1));
+        priced.setBuyNowPrice(new BigDecimal("10.50"));
+        itemRepository.addItems(List.of(priced, new Item("Item2", LocalDate.of(2022, 2, 1)), new Item("Item3")),
+                DuplicatePolicy.FAIL);
+        Path file = directory.resolve("export.csv");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            new ItemExporter(itemRepository, transactionManager).export(out, ExportFormat.CSV);
+        }
+        itemRepository.truncate();
+
+        ImportProgress progress = importer(2, 2).importFile(file);
+        Item imported = itemRepository.findByName("Item, \"quoted\"\r\nover two lines").orElseThrow();
+        assertAll(
+                () -> assertEquals(3, progress.getRecords()),
+                () -> assertEquals(3, progress.getAdded()),
+                () -> assertEquals(Files.size(file), progress.getBytesRead()),
+                () -> assertEquals(3, itemRepository.count()),
+                () -> assertEquals(LocalDate.of(2022, 1, 1), imported.getCreationDate()),
+                () -> assertEquals(new BigDecimal("10.50"), imported.getBuyNowPrice()),
+                () -> assertNull(itemRepository.findByName("Item3").orElseThrow().getCreationDate()),
+                // terminada la importación no quedan puntos de control
+                () -> assertEquals(0, checkpointRepository.count())
+        );
+    }
+
+    /**
+     * Cada nombre va siempre al mismo worker, así que los duplicados del fichero y los que ya están en la base de
+     * datos se saltan sin que dos workers choquen por el mismo nombre.
+     */
+    @Test
+    public void duplicates() throws Exception {
+        itemRepository.addItem("Item0", LocalDate.of(2022, 1, 1));
+        StringBuilder content = new StringBuilder("name,creationDate,buyNowPrice\n");
+        for (int i = 0; i < 100; i++) {
+            content.append("Item").append(i % 40).append(",2022-01-01,\n");
+        }
+
+        ImportProgress progress = importer(3, 5).importFile(write(content.toString()));
+        assertAll(
+                () -> assertEquals(100, progress.getRecords()),
+                () -> assertEquals(39, progress.getAdded()),
+                () -> assertEquals(61, progress.getDuplicates()),
+                () -> assertEquals(40, itemRepository.count())
+        );
+    }
+
+    /**
+     * Si la importación se corta a medias, lo confirmado se queda y la siguiente llamada sigue desde los puntos de
+     * control de cada worker: ningún item se pierde ni se vuelve a insertar, y no aparece como duplicado.
+     */
+    @Test
+    public void resume() throws Exception {
+        StringBuilder content = new StringBuilder("name,creationDate,buyNowPrice\r\n");
+        for (int i = 0; i < 200; i++) {
+            content.append("Item").append(i).append(",2022-01-01,").append(i).append(".99\r\n");
+        }
+        Path file = write(content.toString());
+
+        ItemFileImporter crashing = importer(2, 10);
+        AtomicInteger batches = new AtomicInteger();
+        crashing.setProgressListener(progress -> {
+            if (batches.incrementAndGet() == 3) {
+                throw new IllegalStateException("crash");
+            }
+        });
+        assertEquals("crash", assertThrows(IllegalStateException.class, () -> crashing.importFile(file)).getMessage());
+        long committed = itemRepository.count();
+        assertTrue(committed >= 30 && committed < 200, "committed " + committed);
+        assertTrue(checkpointRepository.count() > 0);
+
+        // el particionado depende del número de workers
+        assertThrows(IllegalStateException.class, () -> importer(3, 10).importFile(file));
+
+        ImportProgress progress = importer(2, 10).importFile(file);
+        assertAll(
+                // lo anterior al menor punto de control ni se lee
+                () -> assertEquals(committed, progress.getResumed() + (progress.getStartOffset() == 0 ? 0 : 200 - progress.getRecords())),
+                () -> assertEquals(200 - committed, progress.getAdded()),
+                () -> assertEquals(0, progress.getDuplicates()),
+                () -> assertEquals(200, itemRepository.count()),
+                () -> assertEquals(new BigDecimal("199.99"), itemRepository.findByName("Item199").orElseThrow().getBuyNowPrice()),
+                () -> assertEquals(0, checkpointRepository.count())
+        );
+    }
+
+    /**
+     * Otra transacción inserta Item7 sin confirmar antes de que el worker compruebe los duplicados, así que la
+     * comprobación no lo ve y el insert del lote espera en el índice único. Al confirmar la otra, el lote falla
+     * por el nombre y se reintenta: el segundo intento encuentra Item7 y lo salta.
+     */
+    @Test
+    @RequiresPostgreSQL
+    public void concurrentInsertRetriesBatch() throws Exception {
+        StringBuilder content = new StringBuilder("name,creationDate,buyNowPrice\n");
+        for (int i = 0; i < 20; i++) {
+            content.append("Item").append(i).append(",2022-01-01,\n");
+        }
+        Path file = write(content.toString());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        try {
+            Future<?> concurrent = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                itemRepository.saveAndFlush(new Item("Item7", LocalDate.of(2022, 1, 1)));
+                inserted.countDown();
+                try {
+                    assertTrue(commit.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertTrue(inserted.await(10, TimeUnit.SECONDS));
+
+            Future<ImportProgress> importing = executor.submit(() -> importer(1, 20).importFile(file));
+            awaitLockWait();
+            commit.countDown();
+            concurrent.get(10, TimeUnit.SECONDS);
+
+            ImportProgress progress = importing.get(10, TimeUnit.SECONDS);
+            assertAll(
+                    () -> assertEquals(1, progress.getRetriedBatches()),
+                    () -> assertEquals(19, progress.getAdded()),
+                    () -> assertEquals(1, progress.getDuplicates()),
+                    () -> assertEquals(20, itemRepository.count())
+            );
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Espera a que alguna sesión de la base de datos esté bloqueada esperando un lock.
+     */
+    private void awaitLockWait() throws InterruptedException {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (jdbcTemplate.queryForObject("select count(*) from pg_stat_activity where datname = current_database()"
+                + " and wait_event_type = 'Lock'", Integer.class) == 0) {
+            assertTrue(System.nanoTime() < deadline, "the import never waited for the uncommitted Item7");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void malformedRecord() throws Exception {
+        Path file = write("name,creationDate,buyNowPrice\nItem1,2022-01-01,\nItem2,2022-13-01,\n");
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> importer(1, 10).importFile(file));
+        assertTrue(ex.getMessage().startsWith("Malformed record at offset 48"), ex.getMessage());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.audit.AsyncLogWriter;
+import com.example.demo.configuration.*;
+import com.example.demo.imports.ImportProgress;
+import com.example.demo.imports.ItemFileImporter;
+import com.example.demo.repositories.ImportCheckpointRepository;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+/**
+ * Imports a generated file of ITEMS items, one in ten a repeated name, with ItemFileImporter and 1, 2 and 4
+ * workers (or those of import.workers, e.g. -Dimport.workers=1,8), and for comparison the first BASELINE_ITEMS
+ * of it with one addItem() per line. Prints the items per second next to the number of processors, the gain
+ * from more workers depends on both the cores of this machine and those of the database. The audit log goes
+ * through the AsyncLogWriter, so a worker holds a single connection.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=ItemImportBenchmark
+ * or at 1, 2, 4 and 8 CPUs, the JVM pinned with taskset and the database left alone: src/test/scripts/import-scaling.sh
+ */
+public class ItemImportBenchmark {
+
+    private static final int ITEMS = 200_000;
+    private static final int BASELINE_ITEMS = 5_000;
+    private static final int BATCH_SIZE = 500;
+    private static final String WORKERS = System.getProperty("import.workers", "1,2,4");
+
+    @Test
+    public void importScaling() throws Exception {
+        Path file = Files.createTempFile("items", ".csv");
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("name,creationDate,buyNowPrice\r\n");
+            for (int i = 0; i < ITEMS; i++) {
+                // every tenth name is the one before it
+                out.write("item-" + (i % 10 == 9 ? i - 1 : i) + ",2022-01-01," + (i % 1000) + ".99\r\n");
+            }
+        }
+        System.out.printf("%d processors, %d MB file%n",
+                Runtime.getRuntime().availableProcessors(), Files.size(file) >> 20);
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AsyncAuditConfiguration.class)) {
+            baseline(context, file);
+            run(context, file, 2, "warm-up");
+            for (String workers : WORKERS.split(",")) {
+                run(context, file, Integer.parseInt(workers.trim()), workers.trim() + " workers");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void baseline(AnnotationConfigApplicationContext context, Path file) throws Exception {
+        ItemRepository itemRepository = context.getBean(ItemRepository.class);
+        itemRepository.truncate();
+        long start = System.nanoTime();
+        try (var lines = Files.lines(file).skip(1).limit(BASELINE_ITEMS)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                String[] fields = line.split(",");
+                try {
+                    itemRepository.addItem(fields[0], LocalDate.parse(fields[1]));
+                } catch (RuntimeException e) {
+                    // the repeated names
+                }
+            }
+        }
+        System.out.printf("addItem() per line: %.0f items/s%n", BASELINE_ITEMS * 1e9 / (System.nanoTime() - start));
+    }
+
+    private static void run(AnnotationConfigApplicationContext context, Path file, int workers, String name) throws Exception {
+        ItemRepository itemRepository = context.getBean(ItemRepository.class);
+        itemRepository.truncate();
+        context.getBean(LogRepository.class).truncate();
+        ItemFileImporter importer = new ItemFileImporter(itemRepository, context.getBean(ImportCheckpointRepository.class),
+                context.getBean(PlatformTransactionManager.class), workers, BATCH_SIZE);
+        ImportProgress progress = importer.importFile(file);
+        System.out.printf("%s: %d added, %d duplicates, %d batches, %.0f items/s%n", name, progress.getAdded(),
+                progress.getDuplicates(), progress.getBatches(), progress.getItemsPerSecond());
+    }
+}
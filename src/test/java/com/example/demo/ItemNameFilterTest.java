@@ -0,0 +1,249 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.filter.BloomFilter;
+import com.example.demo.filter.ItemNameFilter;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {ItemNameFilterTest.FilterConfiguration.class})
+public class ItemNameFilterTest {
+
+    @Configuration
+    @Import(SpringDataConfiguration.class)
+    static class FilterConfiguration {
+
+        @Bean
+        public ItemNameFilter itemNameFilter(DataSource dataSource) {
+            return new ItemNameFilter(dataSource, 0.01, 10_000);
+        }
+    }
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private ItemNameFilter itemNameFilter;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+    }
+
+    /**
+     * Un nombre que el filtro no ha visto nunca no se busca en la base.
+     */
+    @Test
+    public void newNameSkipsQuery() {
+        long absent = itemNameFilter.getAbsent();
+        SqlStatementCounter.reset();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> itemRepository.checkNameDuplicate("Item1"));
+        assertAll(
+                () -> assertEquals(0, SqlStatementCounter.getStatements()),
+                () -> assertEquals(absent + 1, itemNameFilter.getAbsent())
+        );
+    }
+
+    /**
+     * Los nombres guardados entran en el filtro, así que un duplicado se sigue detectando.
+     */
+    @Test
+    public void duplicateStillDetected() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        assertTrue(itemNameFilter.mightContain("Item1"));
+        assertThrows(DuplicateItemNameException.class, () -> itemRepository.addItem("Item1", LocalDate.of(2022, 1, 2)));
+        assertEquals(1, itemRepository.count());
+    }
+
+    /**
+     * En un lote de nombres nuevos addItems() no busca los existentes, y los duplicados se siguen saltando.
+     */
+    @Test
+    public void addItemsSkipsExistingNamesQuery() {
+        List<Item> items = IntStream.range(0, 100).mapToObj(i -> new Item("Item" + i, LocalDate.of(2022, 1, 1))).toList();
+        long absent = itemNameFilter.getAbsent();
+        assertEquals(100, itemRepository.addItems(items, DuplicatePolicy.SKIP));
+        assertTrue(itemNameFilter.getAbsent() - absent >= 95);
+
+        List<Item> again = IntStream.range(95, 105).mapToObj(i -> new Item("Item" + i, LocalDate.of(2022, 1, 1))).toList();
+        assertEquals(5, itemRepository.addItems(again, DuplicatePolicy.SKIP));
+        assertEquals(105, itemRepository.count());
+    }
+
+    /**
+     * Un nombre insertado por otro cliente no está en el filtro hasta rebuild(), pero el índice único
+     * sigue impidiendo el duplicado.
+     */
+    @Test
+    public void rebuildLoadsExternalRows() {
+        new JdbcTemplate(dataSource).update("insert into item (id, version, name) values (-1, 0, 'External')");
+        assertFalse(itemNameFilter.mightContain("External"));
+        assertThrows(DuplicateItemNameException.class, () -> itemRepository.addItem("External", LocalDate.of(2022, 1, 1)));
+
+        itemNameFilter.rebuild();
+        assertTrue(itemNameFilter.mightContain("External"));
+    }
+
+    /**
+     * Un rebuild() mientras una transacción tiene un nombre escrito pero sin commit: la consulta del rebuild no lo
+     * ve, pero el filtro nuevo lo conserva, porque el commit llega después.
+     */
+    @Test
+    public void rebuildKeepsUncommittedNames() {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+                assertDoesNotThrow(() -> other.submit(itemNameFilter::rebuild).get(10, TimeUnit.SECONDS));
+            });
+        } finally {
+            other.shutdown();
+        }
+        assertAll(
+                () -> assertEquals(1, itemRepository.count()),
+                () -> assertTrue(itemNameFilter.mightContain("Item1"))
+        );
+    }
+
+    /**
+     * Con un intervalo de rebuild, un nombre insertado por otro cliente entra en el filtro sin llamar a rebuild().
+     */
+    @Test
+    public void periodicRebuild() throws InterruptedException {
+        ItemNameFilter filter = new ItemNameFilter(dataSource, 0.01, 1_000);
+        filter.setRebuildInterval(Duration.ofMillis(50));
+        filter.afterPropertiesSet();
+        try {
+            new JdbcTemplate(dataSource).update("insert into item (id, version, name) values (-1, 0, 'External')");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!filter.mightContain("External") && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(filter.mightContain("External"));
+            assertEquals(0, filter.getRebuildFailures());
+        } finally {
+            filter.destroy();
+        }
+    }
+
+    /**
+     * truncate() vacía también el filtro.
+     */
+    @Test
+    public void truncateClearsFilter() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        itemRepository.truncate();
+        assertFalse(itemNameFilter.mightContain("Item1"));
+    }
+
+    /**
+     * Hasta que el truncate confirma el filtro no cambia: si se deshace, los nombres siguen en la tabla y el
+     * filtro no puede darlos por ausentes. Tampoco pierde los nombres aún sin confirmar de otra transacción.
+     */
+    @Test
+    public void truncateRolledBackKeepsFilter() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            itemRepository.truncate();
+            assertTrue(itemNameFilter.mightContain("Item1"));
+            status.setRollbackOnly();
+        });
+        assertTrue(itemNameFilter.mightContain("Item1"));
+
+        // otro hilo trunca la tabla mientras esta transacción tiene un nombre sin confirmar
+        Thread writer = new Thread(() -> itemRepository.truncate());
+        transactionTemplate.executeWithoutResult(status -> {
+            itemNameFilter.add("Uncommitted");
+            writer.start();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertTrue(itemNameFilter.mightContain("Uncommitted"));
+        });
+        assertFalse(itemNameFilter.mightContain("Item1"));
+    }
+
+    /**
+     * Un nombre que otra transacción ha escrito y aún no confirma no está en la base para esta, pero el filtro
+     * acertaba: no cuenta como falso positivo. Sí cuenta cuando ya no lo escribe nadie y la base no lo tiene.
+     */
+    @Test
+    public void uncommittedNameIsNoFalsePositive() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        long falsePositives = itemNameFilter.getFalsePositives();
+        transactionTemplate.executeWithoutResult(status -> {
+            itemNameFilter.add("Pending");
+            requiresNew.executeWithoutResult(inner -> itemRepository.checkNameDuplicate("Pending"));
+            assertEquals(falsePositives, itemNameFilter.getFalsePositives());
+            status.setRollbackOnly();
+        });
+
+        requiresNew.executeWithoutResult(status -> itemRepository.checkNameDuplicate("Pending"));
+        assertEquals(falsePositives + 1, itemNameFilter.getFalsePositives());
+    }
+
+    /**
+     * Con el tamaño calculado para n elementos, la tasa de falsos positivos queda cerca de la pedida.
+     */
+    @Test
+    public void falsePositiveRate() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("present-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain("present-" + i));
+            if (filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+        System.out.println("false positives: " + falsePositives + " of 100000, expected rate " + filter.expectedFalsePositiveRate());
+        assertTrue(falsePositives < 2_000);
+    }
+}
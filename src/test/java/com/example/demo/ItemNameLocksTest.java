@@ -0,0 +1,171 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.locking.ItemNameLocks;
+import com.example.demo.locking.LockScope;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Las mismas pruebas con los locks de la JVM y con los advisory locks de PostgreSQL.
+ */
+@ExtendWith(SpringExtension.class)
+public class ItemNameLocksTest {
+
+    private static final int THREADS = 8;
+    private static final int NAMES = 20;
+
+    @Configuration
+    @Import(AsyncAuditConfiguration.class)
+    static class JvmConfiguration {
+
+        @Bean
+        public ItemNameLocks itemNameLocks(DataSource dataSource) {
+            return new ItemNameLocks(dataSource, LockScope.JVM, 64, Duration.ofSeconds(10));
+        }
+    }
+
+    @Configuration
+    @Import(AsyncAuditConfiguration.class)
+    static class DatabaseConfiguration {
+
+        @Bean
+        public ItemNameLocks itemNameLocks(DataSource dataSource) {
+            return new ItemNameLocks(dataSource, LockScope.DATABASE, 64, Duration.ofSeconds(10));
+        }
+    }
+
+    @Nested
+    @ContextConfiguration(classes = {JvmConfiguration.class})
+    class Jvm extends LockTests {
+    }
+
+    @Nested
+    @RequiresPostgreSQL
+    @ContextConfiguration(classes = {DatabaseConfiguration.class})
+    class Database extends LockTests {
+    }
+
+    abstract class LockTests {
+
+        @Autowired
+        private ItemRepository itemRepository;
+
+        @Autowired
+        private LogRepository logRepository;
+
+        @Autowired
+        private PlatformTransactionManager transactionManager;
+
+        @BeforeEach
+        public void clean() {
+            itemRepository.truncate();
+            logRepository.truncate();
+        }
+
+        /**
+         * Varios hilos añaden los mismos nombres en distinto orden: cada nombre se guarda una vez, y el resto
+         * de intentos fallan con DuplicateItemNameException.
+         */
+        @Test
+        public void noDuplicates() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            AtomicInteger added = new AtomicInteger();
+            AtomicInteger duplicates = new AtomicInteger();
+            List<Future<?>> threads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                List<String> names = new ArrayList<>(IntStream.range(0, NAMES).mapToObj(i -> "Item" + i).toList());
+                Collections.shuffle(names);
+                threads.add(executor.submit(() -> {
+                    for (String name : names) {
+                        try {
+                            itemRepository.addItem(name, LocalDate.of(2022, 1, 1));
+                            added.incrementAndGet();
+                        } catch (DuplicateItemNameException e) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> thread : threads) {
+                thread.get(1, TimeUnit.MINUTES);
+            }
+            executor.shutdown();
+
+            assertAll(
+                    () -> assertEquals(NAMES, added.get()),
+                    () -> assertEquals((THREADS - 1) * NAMES, duplicates.get()),
+                    () -> assertEquals(NAMES, itemRepository.count())
+            );
+        }
+
+        /**
+         * Mientras una transacción tiene Item1 sin commit, otro addItem("Item1") espera en el lock. Tras el
+         * commit ve el item en checkNameDuplicate() y falla ahí, no en el índice único. Un nombre distinto
+         * no espera.
+         */
+        @Test
+        public void sameNameWaitsOtherNameDoesNot() throws Exception {
+            ExecutorService other = Executors.newSingleThreadExecutor();
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Future<?> first = Executors.newSingleThreadExecutor().submit(() ->
+                    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+                        locked.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }));
+            assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+            other.submit(() -> itemRepository.addItem("Item2", LocalDate.of(2022, 1, 1))).get(10, TimeUnit.SECONDS);
+            Future<?> second = other.submit(() -> itemRepository.addItem("Item1", LocalDate.of(2022, 1, 2)));
+            assertThrows(TimeoutException.class, () -> second.get(500, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            Exception ex = assertThrows(Exception.class, () -> second.get(10, TimeUnit.SECONDS));
+            other.shutdown();
+            assertAll(
+                    () -> assertInstanceOf(DuplicateItemNameException.class, ex.getCause()),
+                    () -> assertEquals("Item with name Item1 already exists", ex.getCause().getMessage()),
+                    () -> assertEquals(2, itemRepository.count())
+            );
+        }
+    }
+}
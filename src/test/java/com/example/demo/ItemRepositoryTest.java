@@ -0,0 +1,333 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.ids.PooledSequenceGenerator;
+import com.example.demo.models.Item;
+import com.example.demo.projections.ItemName;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class ItemRepositoryTest {
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+    }
+
+    /**
+     * Aunque alguien se saltee checkNameDuplicate(), el índice único sobre Item.name impide el duplicado.
+     * Es la garantía real cuando dos transacciones concurrentes pasan el chequeo a la vez.
+     */
+    @Test
+    public void uniqueNameIndex() {
+        itemRepository.saveAndFlush(new Item("Item1", LocalDate.of(2022, 5, 1)));
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> itemRepository.saveAndFlush(new Item("Item1", LocalDate.of(2016, 3, 1))));
+        assertEquals(1, itemRepository.findAll().size());
+    }
+
+    /**
+     * Dos addItem() concurrentes con el mismo nombre: el segundo no ve el Item1 todavía sin commit, pasa
+     * checkNameDuplicate() y queda bloqueado en el índice único. Cuando el primero hace commit, la violación
+     * del índice se informa igual que el chequeo, con DuplicateItemNameException.
+     */
+    @Test
+    public void concurrentDuplicate() {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        CountDownLatch inserting = new CountDownLatch(1);
+        try {
+            Future<?> second = new TransactionTemplate(transactionManager).execute(status -> {
+                itemRepository.addItem("Item1", LocalDate.of(2022, 5, 1));
+                onItemInsert(inserting);
+                Future<?> future = other.submit(() -> itemRepository.addItem("Item1", LocalDate.of(2016, 3, 1)));
+                await(inserting);
+                return future;
+            });
+
+            ExecutionException ex = assertThrows(ExecutionException.class, second::get);
+            assertAll(
+                    () -> assertInstanceOf(DuplicateItemNameException.class, ex.getCause()),
+                    () -> assertEquals("Item with name Item1 already exists", ex.getCause().getMessage()),
+                    () -> assertEquals(1, itemRepository.count())
+            );
+        } finally {
+            SqlStatementCounter.setListener(null);
+            other.shutdown();
+        }
+    }
+
+    /**
+     * Lo mismo con addItemNoRollback(): la violación del índice aparece al hacer flush, cuando la transacción ya
+     * no puede confirmarse. Hace rollback, log incluido, pero quien llama recibe el DuplicateItemNameException y
+     * no un UnexpectedRollbackException del commit.
+     */
+    @Test
+    public void concurrentDuplicateNoRollback() {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        CountDownLatch inserting = new CountDownLatch(1);
+        try {
+            Future<?> second = new TransactionTemplate(transactionManager).execute(status -> {
+                itemRepository.addItem("Item1", LocalDate.of(2022, 5, 1));
+                onItemInsert(inserting);
+                Future<?> future = other.submit(() -> itemRepository.addItemNoRollback("Item1", LocalDate.of(2016, 3, 1)));
+                await(inserting);
+                return future;
+            });
+
+            ExecutionException ex = assertThrows(ExecutionException.class, second::get);
+            assertAll(
+                    () -> assertInstanceOf(DuplicateItemNameException.class, ex.getCause()),
+                    () -> assertEquals(1, itemRepository.count()),
+                    // sólo el log de addItem(), el del segundo se fue con su rollback
+                    () -> assertEquals(1, logRepository.count())
+            );
+        } finally {
+            SqlStatementCounter.setListener(null);
+            other.shutdown();
+        }
+    }
+
+    /**
+     * Con FAIL el lote se comporta como addItem(): el duplicado hace rollback de todo lo agregado en la llamada.
+     * El log del lote sobrevive porque se guarda en una transacción REQUIRES_NEW.
+     */
+    @Test
+    public void addItemsFail() {
+        itemRepository.addItem("Item2", LocalDate.of(2022, 3, 1));
+
+        DuplicateItemNameException ex = assertThrows(DuplicateItemNameException.class,
+                () -> itemRepository.addItems(items("Item1", "Item2", "Item3"), DuplicatePolicy.FAIL));
+        assertAll(
+                () -> assertEquals("Item with name Item2 already exists", ex.getMessage()),
+                () -> assertEquals(2, logRepository.findAll().size()),
+                () -> assertEquals(1, itemRepository.findAll().size())
+        );
+    }
+
+    /**
+     * Con FAIL_NO_ROLLBACK, como en addItemNoRollback(), lo agregado antes del duplicado se mantiene.
+     * Acá el duplicado está dentro del mismo lote.
+     */
+    @Test
+    public void addItemsNoRollback() {
+        DuplicateItemNameException ex = assertThrows(DuplicateItemNameException.class,
+                () -> itemRepository.addItems(items("Item1", "Item2", "Item1", "Item3"), DuplicatePolicy.FAIL_NO_ROLLBACK));
+        assertAll(
+                () -> assertEquals("Item with name Item1 already exists", ex.getMessage()),
+                () -> assertEquals(2, itemRepository.findAll().size())
+        );
+    }
+
+    /**
+     * addItems() sólo suelta del contexto de persistencia los items que agrega: lo que la transacción de quien
+     * llama ya tenía cargado sigue gestionado, y sus cambios se guardan al hacer commit.
+     */
+    @Test
+    public void addItemsKeepsCallerEntities() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 5, 1));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Item loaded = itemRepository.findByName("Item1").orElseThrow();
+            itemRepository.addItems(items("Item2", "Item3"), DuplicatePolicy.FAIL);
+            assertTrue(SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory).contains(loaded));
+            loaded.setBuyNowPrice(new BigDecimal("5.00"));
+        });
+        assertAll(
+                () -> assertEquals(3, itemRepository.count()),
+                () -> assertEquals(new BigDecimal("5.00"), itemRepository.findByName("Item1").orElseThrow().getBuyNowPrice())
+        );
+    }
+
+    /**
+     * Con SKIP los duplicados se ignoran, y el lote se parte en varios chunks con un solo log por chunk.
+     */
+    @Test
+    public void addItemsSkip() {
+        itemRepository.addItem("Item7", LocalDate.of(2022, 3, 1));
+
+        List<Item> items = IntStream.range(0, 120).mapToObj(i -> new Item("Item" + (i % 100), LocalDate.of(2022, 1, 1))).toList();
+        int added = itemRepository.addItems(items, DuplicatePolicy.SKIP);
+        assertAll(
+                () -> assertEquals(99, added),
+                () -> assertEquals(100, itemRepository.findAll().size()),
+                () -> assertEquals(1 + 3, logRepository.findAll().size())
+        );
+    }
+
+    /**
+     * Con secuencias pooled-lo, 1000 inserts cuestan 1000 / id.allocation_size llamadas a la secuencia
+     * (antes era una por insert), y los inserts viajan en lotes de hibernate.jdbc.batch_size.
+     */
+    @Test
+    public void pooledSequenceStatements() {
+        List<Item> items = IntStream.range(0, 1000).mapToObj(i -> new Item("Item" + i, LocalDate.of(2022, 1, 1))).toList();
+
+        SqlStatementCounter.reset();
+        itemRepository.addItems(items, DuplicatePolicy.FAIL);
+        long sequenceCalls = SqlStatementCounter.getSequenceCalls();
+        long statements = SqlStatementCounter.getStatements();
+        System.out.println("1000 inserts: " + statements + " statements, " + sequenceCalls + " sequence calls");
+
+        assertAll(
+                () -> assertEquals(1000, itemRepository.count()),
+                () -> assertTrue(sequenceCalls <= 1000 / PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE + 1),
+                () -> assertTrue(statements < 200)
+        );
+    }
+
+    /**
+     * findByName() resuelve el nombre por natural id: después de la primera búsqueda tanto el id como el
+     * Item salen del cache de segundo nivel, sin ir a la base. Al actualizar el precio sube la version,
+     * y el cache READ_WRITE devuelve la versión nueva.
+     */
+    @Test
+    public void findByNameCached() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 5, 1));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        itemRepository.findByName("Item1");
+        SqlStatementCounter.reset();
+        Item cached = itemRepository.findByName("Item1").orElseThrow();
+        assertAll(
+                () -> assertEquals(0, SqlStatementCounter.getStatements()),
+                () -> assertTrue(statistics.getNaturalIdCacheHitCount() > 0),
+                () -> assertTrue(statistics.getSecondLevelCacheHitCount() > 0)
+        );
+
+        cached.setBuyNowPrice(new BigDecimal("10.50"));
+        itemRepository.save(cached);
+        Item updated = itemRepository.findByName("Item1").orElseThrow();
+        assertAll(
+                () -> assertEquals(cached.getVersion() + 1, updated.getVersion()),
+                () -> assertEquals(new BigDecimal("10.50"), updated.getBuyNowPrice())
+        );
+    }
+
+    /**
+     * El borrado por rango de fechas es un único DELETE, y deja fuera de las cachés los items borrados.
+     */
+    @Test
+    public void bulkDelete() {
+        itemRepository.addItems(IntStream.range(0, 10).mapToObj(i ->
+                new Item("Item" + i, LocalDate.of(2022, 1, 1).plusMonths(i))).toList(), DuplicatePolicy.FAIL);
+        itemRepository.findByName("Item1");
+
+        SqlStatementCounter.reset();
+        assertEquals(3, itemRepository.bulkDeleteByCreationDateBetween(LocalDate.of(2022, 2, 1), LocalDate.of(2022, 4, 1)));
+        assertEquals(1, SqlStatementCounter.getStatements());
+
+        assertAll(
+                () -> assertEquals(7, itemRepository.count()),
+                () -> assertTrue(itemRepository.findByName("Item1").isEmpty()),
+                () -> assertTrue(itemRepository.findByName("Item0").isPresent())
+        );
+    }
+
+    /**
+     * truncate() vacía la tabla y también la caché de segundo nivel.
+     */
+    @Test
+    public void truncate() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 5, 1));
+        itemRepository.findByName("Item1");
+
+        itemRepository.truncate();
+
+        assertAll(
+                () -> assertEquals(0, itemRepository.count()),
+                () -> assertTrue(itemRepository.findByName("Item1").isEmpty())
+        );
+    }
+
+    /**
+     * La proyección por interfaz sólo lee el nombre, y no deja entidades en el contexto de persistencia.
+     */
+    @Test
+    public void namesProjection() {
+        itemRepository.addItems(items("Item2", "Item1", "Item3"), DuplicatePolicy.FAIL);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<ItemName> names = itemRepository.findAllProjectedBy(Sort.by("name"));
+            assertAll(
+                    () -> assertEquals(List.of("Item1", "Item2", "Item3"), names.stream().map(ItemName::getName).toList()),
+                    () -> assertFalse(names.get(0) instanceof Item),
+                    () -> assertEquals(0, SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory)
+                            .unwrap(Session.class).getStatistics().getEntityCount())
+            );
+        });
+    }
+
+    /**
+     * Abre el latch cuando un hilo prepara el insert de un Item, es decir cuando ya pasó la comprobación de
+     * duplicados y sólo le queda el índice único.
+     */
+    private static void onItemInsert(CountDownLatch inserting) {
+        SqlStatementCounter.setListener(sql -> {
+            if (sql.regionMatches(true, 0, "insert into item ", 0, 17)) {
+                inserting.countDown();
+            }
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Item> items(String... names) {
+        return Arrays.stream(names).map(name -> new Item(name, LocalDate.of(2022, 1, 1))).toList();
+    }
+}
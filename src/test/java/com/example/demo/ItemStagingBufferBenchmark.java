@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.audit.AsyncLogWriter;
+import com.example.demo.audit.BackpressurePolicy;
+import com.example.demo.configuration.*;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.staging.ItemStagingBuffer;
+
+/**
+ * Concurrent callers adding items and waiting until each is stored: one addItem() transaction per item, and
+ * through the ItemStagingBuffer, which group-commits them. Prints the commit rate and the latency seen by the
+ * callers. The audit log goes through the AsyncLogWriter, otherwise every caller holds two connections and
+ * more callers than half the pool deadlock on it.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=ItemStagingBufferBenchmark
+ */
+public class ItemStagingBufferBenchmark {
+
+    private static final int THREADS = 200;
+    private static final int ITEMS_PER_THREAD = 50;
+
+    @Configuration
+    @Import(AsyncAuditConfiguration.class)
+    static class StagingConfiguration {
+
+        @Bean
+        public ItemStagingBuffer itemStagingBuffer(ItemRepository itemRepository, PlatformTransactionManager transactionManager) {
+            return new ItemStagingBuffer(itemRepository, transactionManager, 10_000, 200, Duration.ofMillis(5), BackpressurePolicy.BLOCK);
+        }
+    }
+
+    @Test
+    public void addItemVersusStagingBuffer() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(StagingConfiguration.class)) {
+            ItemRepository itemRepository = context.getBean(ItemRepository.class);
+            ItemStagingBuffer itemStagingBuffer = context.getBean(ItemStagingBuffer.class);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+
+            jdbcTemplate.execute("truncate table item, log");
+            run("addItem()", itemRepository::addItem);
+            jdbcTemplate.execute("truncate table item, log");
+            run("staging buffer", (name, date) -> itemStagingBuffer.add(name, date).join());
+            System.out.println("staging buffer: " + itemStagingBuffer.getFlushes() + " transactions, "
+                    + itemStagingBuffer.getAverageFlushLatency().toMillis() + "ms/transaction");
+        }
+    }
+
+    private static void run(String name, BiConsumer<String, LocalDate> add) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long[] latencies = new long[THREADS * ITEMS_PER_THREAD];
+        Future<?>[] futures = new Future<?>[THREADS];
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures[t] = executor.submit(() -> {
+                for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+                    long callStart = System.nanoTime();
+                    add.accept(name + "-" + thread + "-" + i, LocalDate.now());
+                    latencies[thread * ITEMS_PER_THREAD + i] = System.nanoTime() - callStart;
+                }
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long nanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.println(name + ": " + (long) (latencies.length / (nanos / 1e9)) + " items/s, p50 "
+                + latencies[latencies.length / 2] / 1_000 + "us, p99 " + latencies[latencies.length * 99 / 100] / 1_000 + "us");
+    }
+}
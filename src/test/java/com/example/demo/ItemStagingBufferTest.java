@@ -0,0 +1,227 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.audit.BackpressurePolicy;
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+import com.example.demo.staging.ItemStagingBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {ItemStagingBufferTest.StagingConfiguration.class})
+public class ItemStagingBufferTest {
+
+    @Configuration
+    @Import(SpringDataConfiguration.class)
+    static class StagingConfiguration {
+
+        @Bean
+        public ItemStagingBuffer itemStagingBuffer(ItemRepository itemRepository, PlatformTransactionManager transactionManager) {
+            return new ItemStagingBuffer(itemRepository, transactionManager, 10_000, 100, Duration.ofMillis(10), BackpressurePolicy.BLOCK);
+        }
+    }
+
+    private static final int THREADS = 8;
+    private static final int ITEMS_PER_THREAD = 50;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ItemStagingBuffer itemStagingBuffer;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+    }
+
+    /**
+     * Varios hilos añaden items a la vez: el buffer los guarda en pocas transacciones, y cada futuro se completa
+     * con su item ya guardado.
+     */
+    @Test
+    public void groupCommit() throws Exception {
+        long flushes = itemStagingBuffer.getFlushes();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<CompletableFuture<Item>>>> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads.add(executor.submit(() -> {
+                List<CompletableFuture<Item>> futures = new ArrayList<>();
+                for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+                    futures.add(itemStagingBuffer.add("Item" + thread + "-" + i, LocalDate.of(2022, 1, 1)));
+                }
+                return futures;
+            }));
+        }
+        List<Item> items = new ArrayList<>();
+        for (Future<List<CompletableFuture<Item>>> thread : threads) {
+            for (CompletableFuture<Item> future : thread.get()) {
+                items.add(future.get());
+            }
+        }
+        executor.shutdown();
+
+        assertAll(
+                () -> assertEquals(THREADS * ITEMS_PER_THREAD, itemRepository.count()),
+                () -> assertTrue(items.stream().allMatch(item -> item.getId() > 0)),
+                () -> assertTrue(itemStagingBuffer.getFlushes() - flushes < THREADS * ITEMS_PER_THREAD),
+                () -> assertEquals(0, itemStagingBuffer.getStagedCount())
+        );
+    }
+
+    /**
+     * Un nombre que ya está en el buffer falla enseguida, sin esperar a la base de datos. Buffer sin arrancar
+     * (no es un bean): lo que tiene se guarda al destruirlo.
+     */
+    @Test
+    public void duplicateInBuffer() throws Exception {
+        ItemStagingBuffer buffer = new ItemStagingBuffer(itemRepository, transactionManager, 10, 100, Duration.ofMillis(10), BackpressurePolicy.BLOCK);
+        CompletableFuture<Item> first = buffer.add("Item1", LocalDate.of(2022, 1, 1));
+        CompletableFuture<Item> second = buffer.add("Item1", LocalDate.of(2022, 1, 1));
+
+        ExecutionException e = assertThrows(ExecutionException.class, second::get);
+        assertInstanceOf(DuplicateItemNameException.class, e.getCause());
+        assertFalse(first.isDone());
+
+        buffer.destroy();
+        assertAll(
+                () -> assertEquals("Item1", first.get().getName()),
+                () -> assertEquals(1, itemRepository.count())
+        );
+    }
+
+    /**
+     * Un nombre que ya está en la base de datos hace fallar sólo su futuro, el resto de la tanda se guarda.
+     */
+    @Test
+    public void duplicateInDatabase() throws Exception {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        ItemStagingBuffer buffer = new ItemStagingBuffer(itemRepository, transactionManager, 10, 100, Duration.ofMillis(10), BackpressurePolicy.BLOCK);
+        CompletableFuture<Item> duplicate = buffer.add("Item1", LocalDate.of(2022, 1, 1));
+        CompletableFuture<Item> fresh = buffer.add("Item2", LocalDate.of(2022, 1, 1));
+
+        // la tanda busca los nombres existentes una sola vez
+        AtomicInteger nameQueries = new AtomicInteger();
+        SqlStatementCounter.setListener(sql -> {
+            if (sql.toLowerCase().contains(" in (")) {
+                nameQueries.incrementAndGet();
+            }
+        });
+        try {
+            buffer.destroy();
+        } finally {
+            SqlStatementCounter.setListener(null);
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, duplicate::get);
+        assertAll(
+                () -> assertInstanceOf(DuplicateItemNameException.class, e.getCause()),
+                () -> assertEquals("Item2", fresh.get().getName()),
+                () -> assertEquals(2, itemRepository.count()),
+                () -> assertEquals(1, buffer.getFlushes()),
+                () -> assertEquals(1, nameQueries.get()),
+                () -> assertEquals(0, buffer.getRetriedBatches())
+        );
+    }
+
+    /**
+     * Los hilos siguen añadiendo items mientras se cierra el buffer: cada uno entra en la cola antes del último
+     * vaciado o se guarda en el momento, y todos los futuros se completan.
+     */
+    @Test
+    public void noItemLostOnShutdown() throws Exception {
+        ItemStagingBuffer buffer = new ItemStagingBuffer(itemRepository, transactionManager, 100, 50, Duration.ofMillis(5), BackpressurePolicy.BLOCK);
+        buffer.afterPropertiesSet();
+        AtomicInteger added = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        List<CompletableFuture<Item>> futures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; !stop.get(); i++) {
+                    futures.add(buffer.add("Item" + thread + "-" + i, LocalDate.of(2022, 1, 1)));
+                    added.incrementAndGet();
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        awaitCount(200, added);
+
+        buffer.destroy();
+        // tras el cierre los items se guardan en el momento
+        awaitCount(added.get() + 20, added);
+        stop.set(true);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertAll(
+                () -> assertEquals(added.get(), itemRepository.count()),
+                () -> assertEquals(added.get(), buffer.getCommitted()),
+                () -> assertEquals(0, buffer.getQueueDepth())
+        );
+    }
+
+    private static void awaitCount(int expected, AtomicInteger count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (count.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Con DROP, lo que no entra en el buffer falla su futuro.
+     */
+    @Test
+    public void dropWhenFull() throws Exception {
+        ItemStagingBuffer buffer = new ItemStagingBuffer(itemRepository, transactionManager, 2, 100, Duration.ofMillis(10), BackpressurePolicy.DROP);
+        List<CompletableFuture<Item>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(buffer.add("Item" + i, LocalDate.of(2022, 1, 1)));
+        }
+
+        buffer.destroy();
+        assertAll(
+                () -> assertEquals(3, buffer.getRejected()),
+                () -> assertEquals(3, futures.stream().filter(CompletableFuture::isCompletedExceptionally).count()),
+                () -> assertEquals(2, itemRepository.count())
+        );
+    }
+}
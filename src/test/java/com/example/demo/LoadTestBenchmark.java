@@ -0,0 +1,232 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.example.demo.audit.AsyncLogWriter;
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Load test with a configurable mix of operations at a number of threads, for measuring each performance
+ * change the same way and comparing it with earlier commits. Every thread picks its operations with a random
+ * generator seeded from load.seed, so two runs issue the same sequence. After a warm-up the operations are
+ * timed for load.seconds, and the throughput and the p50 and p99 latency of each are printed and appended to
+ * a CSV file, one line per operation, labelled with the commit. An operation that fails with an unexpected
+ * exception is timed apart (outcome=error) and only counted in the errors column: the count, throughput and
+ * latencies are those of the operations that succeeded, so errors that fail fast cannot make a run look faster.
+ *
+ * The operations: add, an addItem() of a new name; duplicate, an addItem() of a name already added, which
+ * must fail with a DuplicateItemNameException; log, a LogRepository.log(); read, a findByName() of a name
+ * already added. The audit log of addItem() goes through the AsyncLogWriter, as in the other benchmarks.
+ *
+ * System properties, all optional:
+ * load.threads (8), load.mix (add=40,duplicate=10,log=30,read=20), load.warmup-seconds (5), load.seconds (30),
+ * load.seed (42), load.report (target/load-test/results.csv), load.label (the current git commit)
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=LoadTestBenchmark
+ * or without a PostgreSQL server: mvn test -Pembedded,benchmark -Dtest=LoadTestBenchmark
+ */
+public class LoadTestBenchmark {
+
+    private static final int THREADS = Integer.getInteger("load.threads", 8);
+    private static final String MIX = System.getProperty("load.mix", "add=40,duplicate=10,log=30,read=20");
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 5);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 30);
+    private static final long SEED = Long.getLong("load.seed", 42);
+    private static final Path REPORT = Path.of(System.getProperty("load.report", "target/load-test/results.csv"));
+
+    private enum Operation {
+        ADD, DUPLICATE, LOG, READ
+    }
+
+    @Test
+    public void load() throws Exception {
+        Map<Operation, Integer> mix = parseMix(MIX);
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AsyncAuditConfiguration.class)) {
+            context.getBean(ItemRepository.class).truncate();
+            context.getBean(LogRepository.class).truncate();
+
+            run(context, mix, "warm-up", WARMUP_SECONDS, new SimpleMeterRegistry());
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            long nanos = run(context, mix, "run", SECONDS, registry);
+            report(mix, registry, nanos);
+        }
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Runs the mix on THREADS threads for the given time, recording into the registry. Returns the time taken.
+     */
+    private static long run(AnnotationConfigApplicationContext context, Map<Operation, Integer> mix, String phase,
+                            int seconds, SimpleMeterRegistry registry) throws Exception {
+        ItemRepository itemRepository = context.getBean(ItemRepository.class);
+        LogRepository logRepository = context.getBean(LogRepository.class);
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(SEED + thread);
+                // every thread adds its own names, so a duplicate or a read always finds one
+                String prefix = phase + "-" + thread + "-";
+                int added = 0;
+                while (System.nanoTime() < deadline) {
+                    Operation operation = pick(mix, random.nextInt(total));
+                    if (added == 0 && (operation == Operation.DUPLICATE || operation == Operation.READ)) {
+                        operation = Operation.ADD;
+                    }
+                    String existing = prefix + random.nextInt(Math.max(added, 1));
+                    long begin = System.nanoTime();
+                    String outcome = "success";
+                    try {
+                        switch (operation) {
+                            case ADD -> itemRepository.addItem(prefix + added, LocalDate.now());
+                            case DUPLICATE -> {
+                                try {
+                                    itemRepository.addItem(existing, LocalDate.now());
+                                    throw new IllegalStateException("Duplicate " + existing + " was added");
+                                } catch (DuplicateItemNameException e) {
+                                    // expected
+                                }
+                            }
+                            case LOG -> logRepository.log("load test " + thread);
+                            case READ -> itemRepository.findByName(existing).orElseThrow();
+                        }
+                        if (operation == Operation.ADD) {
+                            added++;
+                        }
+                    } catch (RuntimeException e) {
+                        outcome = "error";
+                    }
+                    timer(registry, operation, outcome).record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        return System.nanoTime() - start;
+    }
+
+    private static Operation pick(Map<Operation, Integer> mix, int value) {
+        for (Map.Entry<Operation, Integer> weight : mix.entrySet()) {
+            value -= weight.getValue();
+            if (value < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty mix " + MIX);
+    }
+
+    private static Timer timer(SimpleMeterRegistry registry, Operation operation, String outcome) {
+        return Timer.builder("load.operation")
+                .tag("operation", operation.name())
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99)
+                // percentiles over the whole run, not the last minutes
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(registry);
+    }
+
+    private static void report(Map<Operation, Integer> mix, SimpleMeterRegistry registry, long nanos) throws IOException {
+        String label = System.getProperty("load.label", commit());
+        String database = System.getProperty("datasource.database", "POSTGRESQL");
+        String timestamp = OffsetDateTime.now().truncatedTo(ChronoUnit.SECONDS).toString();
+        double seconds = nanos / 1e9;
+
+        if (REPORT.getParent() != null) {
+            Files.createDirectories(REPORT.getParent());
+        }
+        boolean header = !Files.exists(REPORT);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(REPORT, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (header) {
+                out.println("timestamp,label,database,threads,mix,seconds,operation,count,errors,throughput_per_s,p50_ms,p99_ms,max_ms");
+            }
+            System.out.printf("%s on %s, %d threads, %s, %.1f s%n", label, database, THREADS, MIX, seconds);
+            for (Operation operation : mix.keySet()) {
+                Timer timer = registry.find("load.operation").tags("operation", operation.name(), "outcome", "success").timer();
+                Timer errors = registry.find("load.operation").tags("operation", operation.name(), "outcome", "error").timer();
+                if (timer == null && errors == null) {
+                    continue;
+                }
+                HistogramSnapshot snapshot = timer == null ? HistogramSnapshot.empty(0, 0, 0) : timer.takeSnapshot();
+                double p50 = percentile(snapshot, 0.5);
+                double p99 = percentile(snapshot, 0.99);
+                long count = snapshot.count();
+                long errorCount = errors == null ? 0 : errors.count();
+                System.out.printf("  %-9s %8d ops %6d errors %9.1f ops/s  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms%n",
+                        operation.name().toLowerCase(), count, errorCount, count / seconds, p50, p99,
+                        snapshot.max(TimeUnit.MILLISECONDS));
+                out.printf("%s,%s,%s,%d,\"%s\",%.1f,%s,%d,%d,%.1f,%.3f,%.3f,%.3f%n", timestamp, label, database, THREADS,
+                        MIX, seconds, operation.name().toLowerCase(), count, errorCount, count / seconds, p50, p99,
+                        snapshot.max(TimeUnit.MILLISECONDS));
+            }
+        }
+        System.out.println("appended to " + REPORT.toAbsolutePath());
+    }
+
+    private static double percentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static String commit() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String commit = new String(git.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            return git.waitFor() == 0 ? commit : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+}
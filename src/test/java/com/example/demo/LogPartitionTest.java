@@ -0,0 +1,177 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.example.demo.audit.LogPartitionManager;
+import com.example.demo.configuration.*;
+import com.example.demo.models.Log;
+import com.example.demo.repositories.LogRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class LogPartitionTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2022, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(2022, 6, 30);
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private LogPartitionManager logPartitionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    public void clean() {
+        logRepository.truncate();
+        logPartitionManager.createPartitions(YearMonth.from(FIRST_DAY), YearMonth.from(LAST_DAY));
+        // un log por día de enero a junio, uno por partición mensual
+        logRepository.saveAll(FIRST_DAY.datesUntil(LAST_DAY.plusDays(1)).map(date -> {
+            Log log = new Log("log " + date);
+            log.setDate(date);
+            return log;
+        }).toList());
+    }
+
+    /**
+     * La retención borra las particiones de los meses caducados con un DROP, sin recorrer sus filas.
+     */
+    @Test
+    @RequiresPostgreSQL
+    public void retentionDropsPartitions() {
+        assertTrue(logPartitionManager.isPartitioned());
+        assertTrue(logPartitionManager.partitions().containsAll(List.of("log_p2022_01", "log_p2022_06")));
+
+        assertEquals(3, logPartitionManager.dropPartitionsBefore(LocalDate.of(2022, 4, 1)));
+
+        List<String> partitions = logPartitionManager.partitions();
+        assertAll(
+                () -> assertFalse(partitions.contains("log_p2022_03")),
+                () -> assertTrue(partitions.contains("log_p2022_04")),
+                () -> assertEquals(91, logRepository.count()),
+                () -> assertEquals(LocalDate.of(2022, 4, 1), logRepository.findByIdGreaterThanOrderByIdAsc(0,
+                        Limit.of(1)).get(0).getDate())
+        );
+    }
+
+    /**
+     * Una consulta por rango de fechas sólo lee las particiones de ese rango.
+     */
+    @Test
+    @RequiresPostgreSQL
+    public void partitionPruning() {
+        String plan = String.join("\n", new JdbcTemplate(dataSource).queryForList(
+                "explain select * from log where date between '2022-05-01' and '2022-05-31'", String.class));
+
+        assertAll(
+                () -> assertTrue(plan.contains("log_p2022_05"), plan),
+                () -> assertFalse(plan.contains("log_p2022_04"), plan),
+                () -> assertFalse(plan.contains("log_p2022_06"), plan),
+                () -> assertEquals(31, logRepository.streamLogs(LocalDate.of(2022, 5, 1), LocalDate.of(2022, 5, 31), log -> { }))
+        );
+    }
+
+    /**
+     * Los logs de un mes sin partición van a la partición por defecto; al crear la del mes se mueven a ella.
+     */
+    @Test
+    @RequiresPostgreSQL
+    public void defaultPartitionRowsMoved() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Log log = new Log("log before its partition");
+        log.setDate(LocalDate.of(2023, 1, 15));
+        logRepository.save(log);
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from log_default", Integer.class));
+
+        try {
+            assertEquals(1, logPartitionManager.createPartitions(YearMonth.of(2023, 1), YearMonth.of(2023, 1)));
+            assertAll(
+                    () -> assertEquals(0, jdbcTemplate.queryForObject("select count(*) from log_default", Integer.class)),
+                    () -> assertEquals(1, jdbcTemplate.queryForObject("select count(*) from log_p2023_01", Integer.class)),
+                    () -> assertEquals(182, logRepository.count())
+            );
+        } finally {
+            jdbcTemplate.execute("drop table if exists log_p2023_01");
+        }
+    }
+
+    /**
+     * Una ejecución programada que falla no para las siguientes: se cuenta, y la siguiente que funciona se anota.
+     */
+    @Test
+    public void maintenanceSurvivesFailures() throws Exception {
+        DataSource h2 = new DriverManagerDataSource("jdbc:h2:mem:log_maintenance;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(h2);
+        jdbcTemplate.execute("create table log (id bigint primary key, message varchar(255), date date not null)");
+
+        LogPartitionManager h2Manager = new LogPartitionManager(h2, 3, 1);
+        h2Manager.setMaintenanceInterval(Duration.ofMillis(20));
+        h2Manager.afterPropertiesSet();
+        try {
+            assertNotNull(h2Manager.getLastSuccess());
+            // sin la tabla la retención falla en cada ejecución
+            jdbcTemplate.execute("drop table log");
+            await(() -> h2Manager.getFailures() >= 2);
+
+            jdbcTemplate.execute("create table log (id bigint primary key, message varchar(255), date date not null)");
+            Instant recovered = Instant.now();
+            await(() -> h2Manager.getLastSuccess().isAfter(recovered));
+        } finally {
+            h2Manager.destroy();
+            jdbcTemplate.execute("drop table if exists log");
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * En una base de datos sin particiones, como el H2 de las pruebas, la tabla se queda como está y la retención
+     * se hace con un DELETE.
+     */
+    @Test
+    public void embeddedDatabaseFallback() throws Exception {
+        DataSource h2 = new DriverManagerDataSource("jdbc:h2:mem:log_partitions;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(h2);
+        jdbcTemplate.execute("create table log (id bigint primary key, message varchar(255), date date not null)");
+        IntStream.range(0, 60).forEach(i ->
+                jdbcTemplate.update("insert into log values (?, ?, ?)", i, "log " + i, FIRST_DAY.plusDays(i)));
+
+        LogPartitionManager h2Manager = new LogPartitionManager(h2, 3, 0);
+        h2Manager.setMaintenanceInterval(null);
+        h2Manager.afterPropertiesSet();
+
+        assertFalse(h2Manager.isPartitioned());
+        assertEquals(0, h2Manager.createPartitions(YearMonth.from(FIRST_DAY), YearMonth.from(LAST_DAY)));
+        assertEquals(0, h2Manager.dropPartitionsBefore(LocalDate.of(2022, 2, 1)));
+        assertEquals(29, jdbcTemplate.queryForObject("select count(*) from log", Integer.class));
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.audit.AuditEvent;
+import com.example.demo.configuration.*;
+import com.example.demo.models.Log;
+import com.example.demo.projections.LogEntry;
+import com.example.demo.repositories.LogRepository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class LogRepositoryTest {
+
+    private static final int LOGS = 1_200;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void clean() {
+        logRepository.truncate();
+        // un log por día, para poder filtrar por rango de fechas
+        logRepository.saveAll(IntStream.range(0, LOGS).mapToObj(i -> {
+            Log log = new Log("log " + i);
+            log.setDate(LocalDate.of(2022, 1, 1).plusDays(i));
+            return log;
+        }).toList());
+    }
+
+    /**
+     * showLogs(sink) recorre la tabla en páginas por id (keyset), así que pasa por varias páginas
+     * y entrega todos los logs en orden, sin cargar la tabla entera.
+     */
+    @Test
+    public void showLogsKeyset() {
+        List<String> messages = new ArrayList<>();
+        logRepository.showLogs(log -> messages.add(log.getMessage()));
+
+        assertAll(
+                () -> assertEquals(LOGS, messages.size()),
+                () -> assertEquals("log 0", messages.get(0)),
+                () -> assertEquals("log " + (LOGS - 1), messages.get(LOGS - 1))
+        );
+    }
+
+    @Test
+    public void showLogsByDate() {
+        List<Log> logs = new ArrayList<>();
+        logRepository.showLogs(LocalDate.of(2022, 1, 1), LocalDate.of(2023, 12, 31), logs::add);
+
+        assertAll(
+                () -> assertEquals(730, logs.size()),
+                () -> assertEquals(LocalDate.of(2023, 12, 31), logs.get(729).getDate())
+        );
+    }
+
+    /**
+     * showLogEntries() recorre las mismas páginas que showLogs(), pero como valores LogEntry.
+     */
+    @Test
+    public void showLogEntries() {
+        List<LogEntry> entries = new ArrayList<>();
+        logRepository.showLogEntries(entries::add);
+        List<LogEntry> byDate = new ArrayList<>();
+        logRepository.showLogEntries(LocalDate.of(2022, 1, 1), LocalDate.of(2023, 12, 31), byDate::add);
+
+        assertAll(
+                () -> assertEquals(LOGS, entries.size()),
+                () -> assertEquals("log 0", entries.get(0).message()),
+                () -> assertEquals(LocalDate.of(2022, 1, 1).plusDays(LOGS - 1), entries.get(LOGS - 1).date()),
+                () -> assertEquals(730, byDate.size())
+        );
+    }
+
+    /**
+     * streamLogs() usa un único cursor dentro de una transacción read-only.
+     */
+    @Test
+    public void streamLogs() {
+        List<String> messages = new ArrayList<>();
+
+        assertAll(
+                () -> assertEquals(LOGS, logRepository.streamLogs(log -> messages.add(log.getMessage()))),
+                () -> assertEquals("log 0", messages.get(0)),
+                () -> assertEquals(365, logRepository.streamLogs(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31), log -> { }))
+        );
+    }
+
+    /**
+     * Dentro de la transacción de quien llama, streamLogs() sólo suelta los logs que recorre: lo que esa
+     * transacción tenía en el contexto de persistencia sigue gestionado.
+     */
+    @Test
+    public void streamLogsKeepsCallerEntities() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Log own = new Log("caller's log");
+            own.setDate(LocalDate.of(2030, 1, 1));
+            logRepository.save(own);
+
+            assertEquals(730, logRepository.streamLogs(LocalDate.of(2022, 1, 1), LocalDate.of(2023, 12, 31), log -> { }));
+            assertTrue(entityManager.contains(own));
+        });
+    }
+
+    /**
+     * Borrar los logs anteriores a una fecha es una sola sentencia, sin cargarlos uno a uno.
+     */
+    @Test
+    public void bulkDeleteByDateBefore() {
+        SqlStatementCounter.reset();
+        assertEquals(365, logRepository.bulkDeleteByDateBefore(LocalDate.of(2023, 1, 1)));
+        assertAll(
+                () -> assertEquals(1, SqlStatementCounter.getStatements()),
+                () -> assertEquals(LOGS - 365, logRepository.count())
+        );
+    }
+
+    /**
+     * Un log de evento guarda sólo el código y los parámetros, pero getMessage(), toString() y las
+     * proyecciones devuelven el texto de siempre. La tabla log_template permite leerlo también desde SQL.
+     */
+    @Test
+    public void auditEvents() {
+        logRepository.truncate();
+        logRepository.log(AuditEvent.ADDING_ITEM, "Item1");
+        logRepository.audit(AuditEvent.ADDING_ITEM_BATCH, 50, "Item, with \u001F separator");
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<Log> logs = logRepository.findAll(Sort.by("id"));
+        List<LogEntry> entries = new ArrayList<>();
+        logRepository.showLogEntries(entries::add);
+        assertAll(
+                () -> assertEquals(AuditEvent.ADDING_ITEM, logs.get(0).getEvent()),
+                () -> assertEquals("Item1", logs.get(0).getParameters()),
+                () -> assertEquals("adding item with name Item1", logs.get(0).getMessage()),
+                () -> assertTrue(logs.get(0).toString().contains("message=adding item with name Item1")),
+                () -> assertEquals("adding batch of 50 items starting with name Item, with \u001F separator", logs.get(1).getMessage()),
+                () -> assertEquals("adding item with name Item1", entries.get(0).message()),
+                () -> assertEquals(List.of(1, 3), jdbcTemplate.queryForList("select event from log order by id", Integer.class)),
+                () -> assertEquals("adding item with name Item1", jdbcTemplate.queryForObject(
+                        "select replace(t.template, '{0}', l.parameters) from log l join log_template t on t.id = l.event"
+                                + " where l.event = 1", String.class))
+        );
+    }
+
+    /**
+     * Mientras exista la columna message (hasta V4) cada log lleva ahí también el texto entero, que es lo
+     * único que lee la versión anterior; uno de texto libre se escribe sólo ahí, sin parámetros. Un log sin
+     * parámetros, como los que escribe la versión anterior, se lee de esa columna. Un mensaje null sigue
+     * siendo null, no el texto "null".
+     */
+    @Test
+    public void legacyMessage() {
+        logRepository.truncate();
+        logRepository.log(AuditEvent.ADDING_ITEM, "Item1");
+        logRepository.log((String) null);
+        logRepository.log("free text");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        // como la escribe la versión anterior, el evento queda en el valor por defecto
+        jdbcTemplate.update("insert into log (id, message, date) values (1000000000, 'written before V2', current_date)");
+
+        List<Log> logs = logRepository.findAll(Sort.by("id"));
+        List<LogEntry> entries = new ArrayList<>();
+        logRepository.showLogEntries(entries::add);
+        assertAll(
+                () -> assertEquals("adding item with name Item1", jdbcTemplate.queryForObject(
+                        "select message from log where event = 1", String.class)),
+                () -> assertEquals("free text", jdbcTemplate.queryForObject(
+                        "select message from log where parameters is null and message = 'free text'", String.class)),
+                () -> assertNull(logs.get(1).getParameters()),
+                () -> assertNull(logs.get(1).getMessage()),
+                () -> assertNull(entries.get(1).message()),
+                () -> assertEquals("free text", logs.get(2).getMessage()),
+                () -> assertEquals("free text", entries.get(2).message()),
+                () -> assertEquals(AuditEvent.TEXT, logs.get(3).getEvent()),
+                () -> assertEquals("written before V2", logs.get(3).getMessage()),
+                () -> assertEquals("written before V2", entries.get(3).message())
+        );
+    }
+
+    /**
+     * El número de parámetros tiene que coincidir con la plantilla.
+     */
+    @Test
+    public void auditEventArity() {
+        assertThrows(IllegalArgumentException.class, () -> new Log(AuditEvent.ADDING_ITEM_BATCH, "Item1"));
+    }
+}
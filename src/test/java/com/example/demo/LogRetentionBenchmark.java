@@ -0,0 +1,72 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.audit.LogPartitionManager;
+import com.example.demo.configuration.*;
+import com.example.demo.repositories.LogRepository;
+
+/**
+ * A year of retention over two years of logs, and the latency of a one-month date range query, with the
+ * Log table as one table (-Dlog.partitioning=false) and partitioned by month.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=LogRetentionBenchmark
+ */
+public class LogRetentionBenchmark {
+
+    private static final int LOGS = 1_000_000;
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2023, 1);
+    private static final int MONTHS = 24;
+    private static final int QUERIES = 20;
+
+    @AfterEach
+    public void reset() {
+        System.clearProperty("log.partitioning");
+    }
+
+    @Test
+    public void unpartitionedAndPartitioned() {
+        run(false);
+        run(true);
+    }
+
+    private static void run(boolean partitioning) {
+        System.setProperty("log.partitioning", String.valueOf(partitioning));
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SpringDataConfiguration.class)) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+            LogPartitionManager logPartitionManager = context.getBean(LogPartitionManager.class);
+            LogRepository logRepository = context.getBean(LogRepository.class);
+
+            jdbcTemplate.execute("truncate table log");
+            logPartitionManager.createPartitions(FIRST_MONTH, FIRST_MONTH.plusMonths(MONTHS - 1));
+            jdbcTemplate.update("insert into log (id, event, parameters, date) select g, 0, 'log ' || g, ? + (g % ?) "
+                    + "from generate_series(1, ?) g", FIRST_MONTH.atDay(1), MONTHS * 365 / 12, LOGS);
+            jdbcTemplate.execute("analyze log");
+
+            LocalDate from = FIRST_MONTH.plusMonths(MONTHS / 2).atDay(1);
+            LocalDate to = FIRST_MONTH.plusMonths(MONTHS / 2).atEndOfMonth();
+            long rows = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                rows = logRepository.streamLogs(from, to, log -> { });
+            }
+            long queryNanos = (System.nanoTime() - start) / QUERIES;
+
+            start = System.nanoTime();
+            logPartitionManager.dropPartitionsBefore(FIRST_MONTH.plusMonths(MONTHS / 2).atDay(1));
+            long retentionNanos = System.nanoTime() - start;
+
+            System.out.println("partitioning=" + partitioning + ": " + queryNanos / 1_000_000 + "ms/month query ("
+                    + rows + " logs), " + retentionNanos / 1_000_000 + "ms to expire a year, "
+                    + logRepository.count() + " logs left");
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.configuration.*;
+
+/**
+ * Storage of a million audit logs as whole messages, as Log stored them before AuditEvent; during the expand
+ * step (V2 to V4), with the event code and parameters next to the rendered message; and as event codes with
+ * parameters only, once V4 has dropped the message column. The tables have the columns Hibernate creates,
+ * the primary key and the date index, and are filled with the same mix of messages: mostly addItem() audits, one in ten
+ * addItemNoRollback() and one in ten addItems() batches. Reports table and index size, average row size
+ * and the WAL written by the inserts.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=LogStorageBenchmark
+ */
+public class LogStorageBenchmark {
+
+    private static final int ROWS = 1_000_000;
+
+    @Test
+    public void messagesVersusEvents() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SpringDataConfiguration.class)) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+            try {
+                jdbcTemplate.execute("create table log_storage_text (date date not null, id bigint not null, "
+                        + "message varchar(255), primary key (id))");
+                jdbcTemplate.execute("create index log_storage_text_date_idx on log_storage_text (date)");
+                measure(jdbcTemplate, "messages", "log_storage_text",
+                        "insert into log_storage_text (date, id, message) select current_date, g, case g % 10"
+                                + " when 0 then 'adding batch of 50 items starting with name Item' || g"
+                                + " when 1 then 'adding log in method with no rollback for item Item' || g"
+                                + " else 'adding item with name Item' || g end from generate_series(1, ?) g");
+
+                jdbcTemplate.execute("create table log_storage_expand (date date not null, event smallint not null, "
+                        + "id bigint not null, message varchar(255), parameters varchar(255), primary key (id))");
+                jdbcTemplate.execute("create index log_storage_expand_date_idx on log_storage_expand (date)");
+                measure(jdbcTemplate, "expand", "log_storage_expand",
+                        "insert into log_storage_expand (date, event, id, message, parameters) select current_date, case g % 10"
+                                + " when 0 then 3 when 1 then 2 else 1 end, g, case g % 10"
+                                + " when 0 then 'adding batch of 50 items starting with name Item' || g"
+                                + " when 1 then 'adding log in method with no rollback for item Item' || g"
+                                + " else 'adding item with name Item' || g end, case g % 10"
+                                + " when 0 then '50' || chr(31) || 'Item' || g else 'Item' || g end from generate_series(1, ?) g");
+
+                jdbcTemplate.execute("create table log_storage_event (date date not null, event smallint not null, "
+                        + "id bigint not null, parameters varchar(255), primary key (id))");
+                jdbcTemplate.execute("create index log_storage_event_date_idx on log_storage_event (date)");
+                measure(jdbcTemplate, "events", "log_storage_event",
+                        "insert into log_storage_event (date, event, id, parameters) select current_date, case g % 10"
+                                + " when 0 then 3 when 1 then 2 else 1 end, g, case g % 10"
+                                + " when 0 then '50' || chr(31) || 'Item' || g else 'Item' || g end from generate_series(1, ?) g");
+            } finally {
+                jdbcTemplate.execute("drop table if exists log_storage_text");
+                jdbcTemplate.execute("drop table if exists log_storage_expand");
+                jdbcTemplate.execute("drop table if exists log_storage_event");
+            }
+        }
+    }
+
+    private static void measure(JdbcTemplate jdbcTemplate, String name, String table, String insert) {
+        String walBefore = jdbcTemplate.queryForObject("select pg_current_wal_insert_lsn()::text", String.class);
+        long start = System.nanoTime();
+        jdbcTemplate.update(insert, ROWS);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long wal = jdbcTemplate.queryForObject("select pg_wal_lsn_diff(pg_current_wal_insert_lsn(), ?::pg_lsn)::bigint",
+                Long.class, walBefore);
+        jdbcTemplate.execute("vacuum analyze " + table);
+
+        long heap = jdbcTemplate.queryForObject("select pg_relation_size(?)", Long.class, table);
+        long indexes = jdbcTemplate.queryForObject("select pg_indexes_size(?)", Long.class, table);
+        double row = jdbcTemplate.queryForObject("select avg(pg_column_size(t.*)) from " + table + " t", Double.class);
+        System.out.printf("%s: %,d rows, heap %,d KB, indexes %,d KB, total %,d KB, %.1f bytes per row, WAL %,d KB, %d ms%n",
+                name, ROWS, heap / 1024, indexes / 1024, (heap + indexes) / 1024, row, wal / 1024, millis);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.example.demo.configuration.*;
+import com.example.demo.filter.ItemNameFilter;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ItemRepository;
+
+/**
+ * addItem() and addItems() of mostly new names over a 100k row item table, with the duplicate probe answered
+ * by the database and then by an ItemNameFilter. Prints the statements saved, the false positive rate and
+ * the memory the filter takes.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=NameFilterBenchmark
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+@DirtiesContext
+public class NameFilterBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int INSERTS = 2_000;
+    private static final int BATCHES = 20;
+    private static final int BATCH_SIZE = 500;
+    // one name in this many is already in the table
+    private static final int DUPLICATE_EVERY = 20;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    @AfterEach
+    public void clean() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("truncate table item, log");
+    }
+
+    @Test
+    public void duplicateProbe() {
+        // negative ids never collide with the generated ones
+        jdbcTemplate.update("insert into item (id, version, name) select -g, 0, 'seed-' || g from generate_series(1, ?) g", ROWS);
+        jdbcTemplate.execute("analyze item");
+
+        run("database");
+        jdbcTemplate.execute("delete from item where id > 0");
+
+        // the repository looks the filter up on every call, so registering it turns it on
+        ItemNameFilter itemNameFilter = new ItemNameFilter(dataSource, 0.01, 10_000);
+        itemNameFilter.afterPropertiesSet();
+        applicationContext.getBeanFactory().registerSingleton("itemNameFilter", itemNameFilter);
+        run("filter");
+        System.out.printf("filter: %d KB, expected fpp %.4f, observed fpp %.4f%n", itemNameFilter.getMemoryBytes() / 1024,
+                itemNameFilter.getExpectedFalsePositiveRate(), itemNameFilter.getObservedFalsePositiveRate());
+    }
+
+    private void run(String label) {
+        SqlStatementCounter.reset();
+        long start = System.nanoTime();
+        int duplicates = 0;
+        for (int i = 0; i < INSERTS; i++) {
+            String name = i % DUPLICATE_EVERY == 0 ? "seed-" + (i + 1) : label + "-" + i;
+            try {
+                itemRepository.addItem(name, LocalDate.now());
+            } catch (RuntimeException e) {
+                duplicates++;
+            }
+        }
+        long addItemMicros = (System.nanoTime() - start) / 1_000 / INSERTS;
+        long addItemStatements = SqlStatementCounter.getStatements();
+
+        SqlStatementCounter.reset();
+        start = System.nanoTime();
+        for (int b = 0; b < BATCHES; b++) {
+            int batch = b;
+            List<Item> items = IntStream.range(0, BATCH_SIZE)
+                    .mapToObj(i -> new Item(i % DUPLICATE_EVERY == 0 ? "seed-" + (batch * BATCH_SIZE + i + 1) : label + "-batch-" + batch + "-" + i, LocalDate.now()))
+                    .toList();
+            itemRepository.addItems(items, DuplicatePolicy.SKIP);
+        }
+        long addItemsMicros = (System.nanoTime() - start) / 1_000 / (BATCHES * BATCH_SIZE);
+        System.out.println(label + ": addItem=" + addItemMicros + "us/insert, " + addItemStatements + " statements, "
+                + duplicates + " duplicates; addItems=" + addItemsMicros + "us/item, " + SqlStatementCounter.getStatements() + " statements");
+    }
+}
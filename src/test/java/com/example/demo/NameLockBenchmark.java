@@ -0,0 +1,102 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import com.example.demo.audit.AsyncLogWriter;
+import com.example.demo.configuration.*;
+import com.example.demo.locking.ItemNameLocks;
+import com.example.demo.locking.LockScope;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+/**
+ * addItem() throughput on distinct names with 1 to 8 threads, without ItemNameLocks and with each LockScope.
+ * Distinct names never wait for each other, so the locked runs should scale like the unlocked one. The audit
+ * log goes through the AsyncLogWriter so that every caller holds a single connection.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=NameLockBenchmark
+ */
+public class NameLockBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8};
+    private static final int ITEMS_PER_THREAD = 500;
+
+    @Configuration
+    @Import(AsyncAuditConfiguration.class)
+    static class JvmConfiguration {
+
+        @Bean
+        public ItemNameLocks itemNameLocks(DataSource dataSource) {
+            return new ItemNameLocks(dataSource, LockScope.JVM, 64, Duration.ofSeconds(10));
+        }
+    }
+
+    @Configuration
+    @Import(AsyncAuditConfiguration.class)
+    static class DatabaseConfiguration {
+
+        @Bean
+        public ItemNameLocks itemNameLocks(DataSource dataSource) {
+            return new ItemNameLocks(dataSource, LockScope.DATABASE, 64, Duration.ofSeconds(10));
+        }
+    }
+
+    @Test
+    public void throughputByThreads() throws Exception {
+        run("no locks", AsyncAuditConfiguration.class);
+        run("jvm locks", JvmConfiguration.class);
+        run("advisory locks", DatabaseConfiguration.class);
+    }
+
+    private static void run(String label, Class<?> configuration) throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(configuration)) {
+            ItemRepository itemRepository = context.getBean(ItemRepository.class);
+            LogRepository logRepository = context.getBean(LogRepository.class);
+            // warm up, otherwise the first run pays for the JIT and the pool
+            run(itemRepository, THREADS[THREADS.length - 1]);
+            double single = 0;
+            for (int threads : THREADS) {
+                // through the repositories, so the cached natural ids go too
+                itemRepository.truncate();
+                logRepository.truncate();
+                double rate = run(itemRepository, threads);
+                if (threads == 1) {
+                    single = rate;
+                }
+                System.out.printf("%s, %d threads: %.0f items/s, %.1fx%n", label, threads, rate, rate / single);
+            }
+        }
+    }
+
+    private static double run(ItemRepository itemRepository, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Future<?>[] futures = new Future<?>[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures[t] = executor.submit(() -> {
+                for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+                    itemRepository.addItem("bench-" + thread + "-" + i, LocalDate.now());
+                }
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long nanos = System.nanoTime() - start;
+        executor.shutdown();
+        return threads * ITEMS_PER_THREAD / (nanos / 1e9);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * An import of ITEMS items in one outer transaction, where a duplicate (one in ten) must only undo its own
+ * item. First each item is added with addItem() in a REQUIRES_NEW transaction, a transaction and a connection
+ * per item plus another for its audit log, then with addItemNested(), a savepoint per item on the connection
+ * of the outer transaction, with the log in it. Both write one log and one item per call. Reports the time
+ * per item and the connections borrowed from the pool.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=NestedBenchmark
+ */
+public class NestedBenchmark {
+
+    private static final int ITEMS = 2_000;
+
+    @Test
+    public void requiresNewVersusNested() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SpringDataConfiguration.class)) {
+            run(context, "warm-up", false);
+            run(context, "warm-up", true);
+            run(context, "REQUIRES_NEW", false);
+            run(context, "NESTED", true);
+        }
+    }
+
+    private static void run(AnnotationConfigApplicationContext context, String name, boolean nested) {
+        ItemRepository itemRepository = context.getBean(ItemRepository.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        Timer acquire = context.getBean(MeterRegistry.class).get("hikaricp.connections.acquire").timer();
+        itemRepository.truncate();
+        context.getBean(LogRepository.class).truncate();
+
+        TransactionTemplate outer = new TransactionTemplate(transactionManager);
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        long acquiredBefore = acquire.count();
+        long start = System.nanoTime();
+        int added = outer.execute(status -> {
+            int count = 0;
+            for (int i = 0; i < ITEMS; i++) {
+                // every tenth name is the one before it
+                String itemName = "item-" + (i % 10 == 9 ? i - 1 : i);
+                try {
+                    if (nested) {
+                        itemRepository.addItemNested(itemName, LocalDate.now());
+                    } else {
+                        requiresNew.executeWithoutResult(inner -> itemRepository.addItem(itemName, LocalDate.now()));
+                    }
+                    count++;
+                } catch (DuplicateItemNameException e) {
+                    // only the item's own transaction or savepoint is rolled back
+                }
+            }
+            return count;
+        });
+        long nanos = System.nanoTime() - start;
+
+        System.out.printf("%s: %d items, %d added, %.3f ms per item, %d connections borrowed%n",
+                name, ITEMS, added, nanos / 1e6 / ITEMS, acquire.count() - acquiredBefore);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class NestedTransactionTest {
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+    }
+
+    /**
+     * Igual que TransactionPropagationTest.requiresNew(), pero con addItemNested() dentro de una transacción
+     * externa. NESTED no abre otra transacción: crea un savepoint en la misma conexión. El duplicado vuelve
+     * sólo hasta su savepoint, así que se pierden su item y su log, y la transacción externa sigue y confirma
+     * el resto. Con REQUIRES_NEW el log del duplicado quedaba; aquí se va con el item.
+     */
+    @Test
+    public void nested() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            itemRepository.addItemNested("Item1", LocalDate.of(2022, 5, 1));
+            itemRepository.addItemNested("Item2", LocalDate.of(2022, 3, 1));
+            DuplicateItemNameException ex = assertThrows(DuplicateItemNameException.class,
+                    () -> itemRepository.addItemNested("Item2", LocalDate.of(2016, 3, 1)));
+            assertEquals("Item with name Item2 already exists", ex.getMessage());
+            itemRepository.addItemNested("Item3", LocalDate.of(2022, 1, 1));
+            assertFalse(status.isRollbackOnly());
+        });
+        assertAll(
+                () -> assertEquals(3, logRepository.count()),
+                () -> assertEquals(3, itemRepository.count())
+        );
+    }
+
+    /**
+     * Si la transacción externa hace rollback, se lleva también lo confirmado en los savepoints: a diferencia
+     * de REQUIRES_NEW, lo anidado no es independiente de la transacción que lo contiene.
+     */
+    @Test
+    public void outerRollback() {
+        assertThrows(IllegalStateException.class, () -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            itemRepository.addItemNested("Item1", LocalDate.of(2022, 5, 1));
+            throw new IllegalStateException();
+        }));
+        assertAll(
+                () -> assertEquals(0, logRepository.count()),
+                () -> assertEquals(0, itemRepository.count())
+        );
+    }
+
+    /**
+     * Sin transacción en curso NESTED se comporta como REQUIRED: el duplicado deshace su transacción entera,
+     * log incluido, mientras que addItem() deja el log porque lo escribe con REQUIRES_NEW.
+     */
+    @Test
+    public void withoutTransaction() {
+        itemRepository.addItemNested("Item1", LocalDate.of(2022, 5, 1));
+        assertThrows(DuplicateItemNameException.class, () -> itemRepository.addItemNested("Item1", LocalDate.of(2022, 5, 1)));
+        assertEquals(1, logRepository.count());
+
+        assertThrows(DuplicateItemNameException.class, () -> itemRepository.addItem("Item1", LocalDate.of(2022, 5, 1)));
+        assertEquals(2, logRepository.count());
+    }
+
+    /**
+     * addItemsNested() salta los duplicados con un savepoint por item, todo en una transacción y una sola
+     * conexión del pool.
+     */
+    @Test
+    public void addItemsNested() {
+        itemRepository.addItem("Item2", LocalDate.of(2022, 1, 1));
+        List<Item> items = List.of(new Item("Item1", LocalDate.of(2022, 1, 1)), new Item("Item2", LocalDate.of(2022, 1, 2)),
+                new Item("Item3", LocalDate.of(2022, 1, 3)), new Item("Item1", LocalDate.of(2022, 1, 4)));
+
+        double acquired = meterRegistry.get("hikaricp.connections.acquire").timer().count();
+        assertEquals(2, itemRepository.addItemsNested(items));
+        assertAll(
+                () -> assertEquals(1, meterRegistry.get("hikaricp.connections.acquire").timer().count() - acquired),
+                () -> assertEquals(3, itemRepository.count()),
+                () -> assertEquals(LocalDate.of(2022, 1, 1), itemRepository.findByName("Item1").orElseThrow().getCreationDate()),
+                // el log de addItem() y los de los dos items añadidos
+                () -> assertEquals(3, logRepository.count())
+        );
+    }
+}
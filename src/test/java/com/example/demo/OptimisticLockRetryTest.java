@@ -0,0 +1,94 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.configuration.*;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+import com.example.demo.retry.OptimisticLockRetryTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class OptimisticLockRetryTest {
+
+    private static final String[] HOT_ITEMS = {"Item1", "Item2", "Item3"};
+    private static final int THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 50;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+        for (String name : HOT_ITEMS) {
+            itemRepository.addItem(name, LocalDate.of(2022, 1, 1));
+        }
+    }
+
+    /**
+     * Varios hilos suben el precio de pocos items a la vez. Cada conflicto de @Version hace que el template
+     * repita la transacción entera, así que ninguna actualización se pierde: la suma de los precios es
+     * exactamente la cantidad de actualizaciones.
+     */
+    @Test
+    public void concurrentPriceUpdates() throws Exception {
+        OptimisticLockRetryTemplate retryTemplate = new OptimisticLockRetryTemplate(transactionManager, 100,
+                Duration.ofMillis(1), Duration.ofMillis(50));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    String name = HOT_ITEMS[(thread + i) % HOT_ITEMS.length];
+                    retryTemplate.executeWithoutResult(() -> itemRepository.raiseBuyNowPrice(name, BigDecimal.ONE));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long nanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        int updates = THREADS * UPDATES_PER_THREAD;
+        System.out.println(updates + " updates: " + (long) (updates / (nanos / 1e9)) + " updates/s, "
+                + retryTemplate.getConflicts() + " conflicts, abort rate "
+                + 100 * retryTemplate.getConflicts() / (updates + retryTemplate.getConflicts()) + "%");
+
+        BigDecimal total = itemRepository.findAll().stream().map(item -> item.getBuyNowPrice()).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertAll(
+                () -> assertEquals(0, new BigDecimal(updates).compareTo(total)),
+                () -> assertEquals(updates, retryTemplate.getExecutions()),
+                () -> assertEquals(retryTemplate.getConflicts(), retryTemplate.getRetries()),
+                () -> assertEquals(0, retryTemplate.getFailures())
+        );
+    }
+}
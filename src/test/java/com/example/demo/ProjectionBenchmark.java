@@ -0,0 +1,109 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.export.ExportFormat;
+import com.example.demo.export.ItemExporter;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+/**
+ * Heap allocated per row by the entity reads and by their projection equivalents: the item names, the log
+ * listing and the CSV export of the items. Entities are instantiated, snapshotted for the dirty check and put
+ * in the second-level cache; projections only hold the selected columns.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=ProjectionBenchmark
+ */
+public class ProjectionBenchmark {
+
+    private static final int ROWS = 20_000;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void entitiesAndProjections() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SpringDataConfiguration.class)) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+            ItemRepository itemRepository = context.getBean(ItemRepository.class);
+            LogRepository logRepository = context.getBean(LogRepository.class);
+            PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+            itemRepository.truncate();
+            logRepository.truncate();
+            itemRepository.addItems(IntStream.range(0, ROWS).mapToObj(i -> new Item("item-" + i, LocalDate.now())), DuplicatePolicy.FAIL);
+            // far above the ids of the audit logs of addItems(), and positive for the keyset pages
+            jdbcTemplate.update("insert into log (id, event, parameters, date) select 1000000000 + g, 0, 'log ' || g, current_date from generate_series(1, ?) g", ROWS);
+
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            ItemExporter itemExporter = new ItemExporter(itemRepository, transactionManager);
+            // the first round warms up the JIT
+            for (int i = 0; i < 2; i++) {
+                measure("item names, entities", () -> transactionTemplate.execute(status ->
+                        itemRepository.findAll(Sort.by("name")).stream().map(Item::getName).toList()));
+                measure("item names, projection", () -> transactionTemplate.execute(status ->
+                        itemRepository.findAllProjectedBy(Sort.by("name"))));
+                measure("log listing, entities", () -> logRepository.showLogs(log -> { }));
+                measure("log listing, projection", () -> logRepository.showLogEntries(log -> { }));
+                measure("csv export, entities", () -> transactionTemplate.executeWithoutResult(status ->
+                        exportEntities(itemRepository.findAll(), Writer.nullWriter())));
+                measure("csv export, projection", () -> itemExporter.export(Writer.nullWriter(), ExportFormat.CSV));
+            }
+        }
+    }
+
+    /**
+     * The export as it would be written without ItemExporter: load the entities, then write them. The same
+     * columns, written field by field like ItemExporter, so only the reads differ; the names of the benchmark
+     * need no quoting.
+     */
+    private static void exportEntities(List<Item> items, Writer out) {
+        try {
+            out.write("name,creationDate,buyNowPrice\r\n");
+            for (Item item : items) {
+                out.write(item.getName());
+                out.write(',');
+                if (item.getCreationDate() != null) {
+                    out.write(item.getCreationDate().toString());
+                }
+                out.write(',');
+                if (item.getBuyNowPrice() != null) {
+                    out.write(item.getBuyNowPrice().toPlainString());
+                }
+                out.write("\r\n");
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void measure(String name, Runnable read) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            read.run();
+        }
+        long nanos = System.nanoTime() - start;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        System.out.println(name + ": " + allocated / ((long) ROUNDS * ROWS) + " bytes/row, "
+                + nanos / ROUNDS / 1_000_000 + "ms/" + ROWS + " rows");
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import com.example.demo.audit.AsyncLogWriter;
+import com.example.demo.configuration.*;
+import com.example.demo.reactive.ReactiveItemRepository;
+import com.example.demo.reactive.ReactiveLogRepository;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * The same addItem() calls with a growing number of them in flight: through ItemRepository, one platform
+ * thread per call in flight, and through ReactiveItemRepository, flatMap with that concurrency on the
+ * event loop of the R2DBC driver. Both pools have datasource.pool.maximum-size connections. The JPA
+ * audit goes through the AsyncLogWriter, so both paths need a single connection per call.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=ReactiveBenchmark
+ */
+public class ReactiveBenchmark {
+
+    private static final int CALLS = 4_000;
+    private static final int[] IN_FLIGHT = {10, 50, 200};
+
+    @Configuration
+    @Import({AsyncAuditConfiguration.class, ReactiveDataConfiguration.class})
+    static class BenchmarkConfiguration {
+    }
+
+    @Test
+    public void jpaVersusReactive() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class)) {
+            ItemRepository itemRepository = context.getBean(ItemRepository.class);
+            LogRepository logRepository = context.getBean(LogRepository.class);
+            ReactiveItemRepository reactiveItemRepository = context.getBean(ReactiveItemRepository.class);
+            // connect the event loop and fill the pools before measuring
+            context.getBean(ReactiveLogRepository.class).streamLogs().blockLast();
+            run("warm-up jpa", 10, itemRepository, logRepository, prefix -> jpa(itemRepository, 10, prefix));
+            run("warm-up reactive", 10, itemRepository, logRepository, prefix -> reactive(reactiveItemRepository, 10, prefix));
+
+            for (int inFlight : IN_FLIGHT) {
+                run("jpa", inFlight, itemRepository, logRepository, prefix -> jpa(itemRepository, inFlight, prefix));
+                run("reactive", inFlight, itemRepository, logRepository, prefix -> reactive(reactiveItemRepository, inFlight, prefix));
+            }
+        }
+    }
+
+    private static void jpa(ItemRepository itemRepository, int inFlight, String prefix) {
+        ExecutorService executor = Executors.newFixedThreadPool(inFlight);
+        CompletableFuture.allOf(IntStream.range(0, CALLS)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> itemRepository.addItem(prefix + i, LocalDate.now()), executor))
+                .toArray(CompletableFuture[]::new)).join();
+        executor.shutdown();
+    }
+
+    private static void reactive(ReactiveItemRepository itemRepository, int inFlight, String prefix) {
+        Flux.range(0, CALLS)
+                .flatMap(i -> itemRepository.addItem(prefix + i, LocalDate.now()), inFlight)
+                .blockLast();
+    }
+
+    private static void run(String name, int inFlight, ItemRepository itemRepository, LogRepository logRepository,
+            Consumer<String> calls) {
+        itemRepository.truncate();
+        logRepository.truncate();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int before = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        long start = System.nanoTime();
+        calls.accept(name + "-" + inFlight + "-");
+        long nanos = System.nanoTime() - start;
+
+        System.out.println(name + " x" + inFlight + ": " + CALLS + " addItem calls, " + (long) (CALLS / (nanos / 1e9))
+                + " calls/s, peak " + threads.getPeakThreadCount() + " threads (" + before + " before)");
+    }
+}
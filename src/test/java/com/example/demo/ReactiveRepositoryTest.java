@@ -0,0 +1,172 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.IllegalTransactionStateException;
+
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.projections.LogEntry;
+import com.example.demo.reactive.ReactiveItemRepository;
+import com.example.demo.reactive.ReactiveLogRepository;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@RequiresPostgreSQL
+@ContextConfiguration(classes = {SpringDataConfiguration.class, ReactiveDataConfiguration.class})
+public class ReactiveRepositoryTest {
+
+    @Autowired
+    private ReactiveItemRepository reactiveItemRepository;
+
+    @Autowired
+    private ReactiveLogRepository reactiveLogRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+    }
+
+    /**
+     * Igual que TransactionPropagationTest.requiresNew(): el log del item duplicado se guarda en su propia
+     * transacción, así que queda aunque la del item se deshaga.
+     */
+    @Test
+    public void requiresNew() {
+        reactiveItemRepository.addItem("Item1", LocalDate.of(2022, 5, 1)).block();
+        reactiveItemRepository.addItem("Item2", LocalDate.of(2022, 3, 1)).block();
+        reactiveItemRepository.addItem("Item3", LocalDate.of(2022, 1, 1)).block();
+
+        DuplicateItemNameException ex = assertThrows(DuplicateItemNameException.class,
+                () -> reactiveItemRepository.addItem("Item2", LocalDate.of(2016, 3, 1)).block());
+        assertAll(
+                () -> assertEquals("Item with name Item2 already exists", ex.getMessage()),
+                () -> assertEquals(4, logRepository.count()),
+                () -> assertEquals(3, itemRepository.count())
+        );
+    }
+
+    /**
+     * Igual que TransactionPropagationTest.noRollback(): la transacción se confirma con el log aunque el
+     * item esté duplicado, y recién después llega la excepción.
+     */
+    @Test
+    public void noRollback() {
+        reactiveItemRepository.addItemNoRollback("Item1", LocalDate.of(2022, 5, 1)).block();
+        reactiveItemRepository.addItemNoRollback("Item2", LocalDate.of(2022, 3, 1)).block();
+
+        DuplicateItemNameException ex = assertThrows(DuplicateItemNameException.class,
+                () -> reactiveItemRepository.addItemNoRollback("Item2", LocalDate.of(2016, 3, 1)).block());
+        assertAll(
+                () -> assertEquals("Item with name Item2 already exists", ex.getMessage()),
+                () -> assertEquals(3, logRepository.count()),
+                () -> assertEquals(2, itemRepository.count())
+        );
+    }
+
+    /**
+     * checkNameDuplicate() es MANDATORY también aquí: sin transacción en curso da error.
+     */
+    @Test
+    public void mandatory() {
+        IllegalTransactionStateException ex = assertThrows(IllegalTransactionStateException.class,
+                () -> reactiveItemRepository.checkNameDuplicate("Item1").block());
+        assertEquals("No existing transaction found for transaction marked with propagation 'mandatory'", ex.getMessage());
+    }
+
+    /**
+     * Los dos repositorios trabajan sobre las mismas tablas: un nombre guardado por JPA es duplicado para
+     * el reactivo, y los ids de los dos no chocan.
+     */
+    @Test
+    public void sharesTablesWithJpa() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        assertThrows(DuplicateItemNameException.class,
+                () -> reactiveItemRepository.addItem("Item1", LocalDate.of(2022, 1, 2)).block());
+
+        reactiveItemRepository.addItem("Item2", null).block();
+        itemRepository.addItem("Item3", LocalDate.of(2022, 1, 3));
+        assertEquals(3, itemRepository.count());
+        assertTrue(itemRepository.findByName("Item2").isPresent());
+    }
+
+    /**
+     * Un nombre guardado por otra transacción después de la comprobación lo rechaza la clave única, y
+     * sigue siendo un DuplicateItemNameException: el insert espera a que la otra transacción confirme.
+     */
+    @Test
+    public void duplicateAfterCheck() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("insert into item (id, version, name) values (nextval('item_seq'), 0, 'Item1')");
+            }
+            CompletableFuture<Void> added = reactiveItemRepository.addItem("Item1", LocalDate.of(2022, 1, 1)).toFuture();
+            awaitLockWait();
+            connection.commit();
+
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> added.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(DuplicateItemNameException.class, ex.getCause());
+        }
+        assertEquals(1, itemRepository.count());
+    }
+
+    /**
+     * Espera a que alguna sentencia esté bloqueada por un lock, el insert de la clave única pendiente.
+     */
+    private void awaitLockWait() throws InterruptedException {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (jdbcTemplate.queryForObject(
+                "select count(*) from pg_stat_activity where wait_event_type = 'Lock' and query like 'insert into item%'",
+                Integer.class) == 0) {
+            assertTrue(System.nanoTime() < deadline, "the insert never waited for the other transaction");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * streamLogs() devuelve todos los logs en orden de id, más de una página de FETCH_SIZE.
+     */
+    @Test
+    public void streamLogs() {
+        for (int i = 0; i < 600; i++) {
+            logRepository.log("log " + i);
+        }
+        List<LogEntry> logs = reactiveLogRepository.streamLogs().collectList().block();
+        assertEquals(600, logs.size());
+        for (int i = 1; i < logs.size(); i++) {
+            assertTrue(logs.get(i - 1).id() < logs.get(i).id());
+        }
+        assertEquals(600, reactiveLogRepository.streamLogs(LocalDate.now(), LocalDate.now()).count().block());
+        assertEquals(0, reactiveLogRepository.streamLogs(LocalDate.of(2000, 1, 1), LocalDate.of(2000, 12, 31)).count().block());
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.models.Item;
+import com.example.demo.models.Log;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+import com.example.demo.routing.ReadOnlyRoutingDataSource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+@TestPropertySource(properties = {
+        "datasource.driver-class-name=org.h2.Driver",
+        "datasource.database=H2",
+        "datasource.username=sa",
+        "datasource.url=" + ReadOnlyRoutingTest.PRIMARY_URL,
+        "datasource.replica.url=" + ReadOnlyRoutingTest.REPLICA_URL})
+public class ReadOnlyRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void clean() throws SQLException {
+        itemRepository.truncate();
+        logRepository.truncate();
+        replicate();
+    }
+
+    /**
+     * Las consultas de los repositorios, y las páginas de showLogs(), son de solo lectura y salen del primario: toman
+     * la conexión del pool de la réplica. Lo que todavía no se ha replicado no se ve desde ellas, pero la comprobación de duplicados de addItem()
+     * va dentro de su transacción de escritura y sigue leyendo del primario.
+     */
+    @Test
+    public void readsGoToReplica() throws SQLException {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        replicate();
+
+        double primary = acquired(false);
+        double replica = acquired(true);
+        assertEquals(Set.of("Item1"), itemRepository.findExistingNames(List.of("Item1")));
+        assertEquals(primary, acquired(false));
+        assertEquals(replica + 1, acquired(true));
+
+        itemRepository.addItem("Item2", LocalDate.of(2022, 1, 1));
+        assertTrue(itemRepository.findExistingNames(List.of("Item2")).isEmpty());
+        assertThrows(DuplicateItemNameException.class, () -> itemRepository.addItem("Item2", LocalDate.of(2022, 1, 1)));
+
+        // showLogs() pages from the replica too: only the log of Item1 has been replicated
+        List<Log> logs = new ArrayList<>();
+        logRepository.showLogs(logs::add);
+        assertEquals(1, logs.size());
+    }
+
+    /**
+     * Una transacción de solo lectura abre una sesión de Hibernate de solo lectura: las entidades que carga no se
+     * comprueban al hacer flush ni guardan una copia de su estado.
+     */
+    @Test
+    public void readOnlySession() throws SQLException {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        replicate();
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            assertTrue(session.isDefaultReadOnly());
+            Item item = entityManager.createQuery("from Item", Item.class).getSingleResult();
+            assertTrue(session.isReadOnly(item));
+        });
+    }
+
+    /**
+     * Si la réplica no da conexiones, las lecturas vuelven al primario.
+     */
+    @Test
+    public void fallbackToPrimary() throws SQLException {
+        DataSource primary = new DriverManagerDataSource(PRIMARY_URL, "sa", "");
+        DataSource missing = new DriverManagerDataSource("jdbc:h2:mem:routing_missing;IFEXISTS=TRUE", "sa", "");
+        ReadOnlyRoutingDataSource routing = new ReadOnlyRoutingDataSource(primary, missing);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try (Connection connection = routing.getConnection()) {
+            assertTrue(PRIMARY_URL.startsWith(connection.getMetaData().getURL()));
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+        assertEquals(1, routing.getFallbacks());
+        assertThrows(SQLException.class, missing::getConnection);
+    }
+
+    /**
+     * Con la réplica caída sólo la primera lectura espera, lo que tarde su pool en rendirse (250 ms aquí, no los 30 s
+     * de connectionTimeout por defecto); las siguientes van directas al primario hasta que pase el intervalo.
+     */
+    @Test
+    public void fallbackLatency() throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("routing-missing-replica");
+        config.setJdbcUrl("jdbc:h2:mem:routing_missing;IFEXISTS=TRUE");
+        config.setUsername("sa");
+        config.setInitializationFailTimeout(-1);
+        config.setConnectionTimeout(250);
+        try (HikariDataSource missing = new HikariDataSource(config)) {
+            ReadOnlyRoutingDataSource routing = new ReadOnlyRoutingDataSource(new DriverManagerDataSource(PRIMARY_URL, "sa", ""), missing);
+            routing.setReplicaRetryInterval(Duration.ofMinutes(1));
+
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            try {
+                long first = millis(routing);
+                assertTrue(first >= 250 && first < 2000, "first read " + first + " ms");
+                assertTrue(routing.isReplicaDown());
+                for (int i = 0; i < 10; i++) {
+                    long next = millis(routing);
+                    assertTrue(next < 100, "read " + i + " after the failure " + next + " ms");
+                }
+            } finally {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            }
+            assertEquals(11, routing.getFallbacks());
+        }
+    }
+
+    /**
+     * Pasado el intervalo se vuelve a probar la réplica, y si responde las lecturas vuelven a ella.
+     */
+    @Test
+    public void replicaRetried() throws Exception {
+        String lateUrl = "jdbc:h2:mem:routing_late";
+        DataSource primary = new DriverManagerDataSource(PRIMARY_URL, "sa", "");
+        DataSource late = new DriverManagerDataSource(lateUrl + ";IFEXISTS=TRUE", "sa", "");
+        ReadOnlyRoutingDataSource routing = new ReadOnlyRoutingDataSource(primary, late);
+        routing.setReplicaRetryInterval(Duration.ofMillis(200));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            assertTrue(PRIMARY_URL.startsWith(url(routing)));
+            // la base de datos en memoria de la réplica vive mientras tenga una conexión abierta
+            try (Connection replica = new DriverManagerDataSource(lateUrl, "sa", "").getConnection()) {
+                // la réplica ya está, pero sigue sin preguntarse durante el intervalo
+                assertTrue(PRIMARY_URL.startsWith(url(routing)));
+                Thread.sleep(250);
+                assertTrue(url(routing).startsWith(lateUrl));
+                assertFalse(routing.isReplicaDown());
+            }
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+        assertEquals(2, routing.getFallbacks());
+    }
+
+    private static long millis(DataSource dataSource) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    private static String url(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+
+    /**
+     * Las conexiones tomadas del pool de la réplica o del primario, cuyos nombres llevan el número del contexto.
+     */
+    private double acquired(boolean replica) {
+        return meterRegistry.get("hikaricp.connections.acquire").timers().stream()
+                .filter(timer -> timer.getId().getTag("pool").startsWith("spring-practice-replica-") == replica)
+                .mapToDouble(Timer::count)
+                .sum();
+    }
+
+    /**
+     * Hace de replicación: copia el esquema y los datos del primario a la réplica.
+     */
+    private static void replicate() throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection connection = new DriverManagerDataSource(PRIMARY_URL, "sa", "").getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("script")) {
+            while (resultSet.next()) {
+                script.add(resultSet.getString(1));
+            }
+        }
+        try (Connection connection = new DriverManagerDataSource(REPLICA_URL, "sa", "").getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+            for (String sql : script) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
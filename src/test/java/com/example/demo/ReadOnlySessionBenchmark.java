@@ -0,0 +1,79 @@
+package com.example.demo;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.DuplicatePolicy;
+import com.example.demo.repositories.ItemRepository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Heap allocated per entity read, loading the whole catalog in a read-write transaction and in a read-only
+ * one. The read-only session keeps no snapshot of the loaded state and skips the dirty check at commit.
+ * The second-level cache is turned off, putting every loaded Item in it costs far more than both.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=ReadOnlySessionBenchmark
+ */
+public class ReadOnlySessionBenchmark {
+
+    private static final int ITEMS = 5_000;
+    private static final int ROUNDS = 20;
+
+    @AfterEach
+    public void reset() {
+        System.clearProperty("hibernate.second-level-cache");
+    }
+
+    @Test
+    public void readWriteAndReadOnly() {
+        System.setProperty("hibernate.second-level-cache", "false");
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SpringDataConfiguration.class)) {
+            new JdbcTemplate(context.getBean(DataSource.class)).execute("truncate table item, log");
+            List<Item> items = IntStream.range(0, ITEMS).mapToObj(i -> new Item("item-" + i, LocalDate.now())).toList();
+            context.getBean(ItemRepository.class).addItems(items, DuplicatePolicy.FAIL);
+
+            EntityManager entityManager =
+                    SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+            PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+            // the first two rounds warm up the JIT
+            for (int i = 0; i < 2; i++) {
+                run(entityManager, transactionManager, false);
+                run(entityManager, transactionManager, true);
+            }
+        }
+    }
+
+    private static void run(EntityManager entityManager, PlatformTransactionManager transactionManager,
+                            boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            transactionTemplate.executeWithoutResult(status ->
+                    entityManager.createQuery("from Item", Item.class).getResultList());
+        }
+        long nanos = System.nanoTime() - start;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        System.out.println("readOnly=" + readOnly + ": " + allocated / ((long) ROUNDS * ITEMS) + " bytes/entity, "
+                + nanos / ROUNDS / 1_000_000 + "ms/" + ITEMS + " entities");
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.example.demo.audit.AuditEvent;
+import com.example.demo.configuration.*;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Con schema.migrations el esquema lo crea Flyway y Hibernate sólo lo valida: si los scripts de
+ * db/migration dejan de coincidir con las entidades, el contexto no arranca.
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+@TestPropertySource(properties = {
+        "datasource.driver-class-name=org.h2.Driver",
+        "datasource.database=H2",
+        "datasource.username=sa",
+        "datasource.url=jdbc:h2:mem:schema_migration;DB_CLOSE_DELAY=-1",
+        "schema.migrations=true"})
+public class SchemaMigrationTest {
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void migratedAndValidated() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        assertEquals("3", jdbcTemplate.queryForObject(
+                "select max(\"version\") from \"flyway_schema_history\" where \"success\"", String.class));
+
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        assertAll(
+                () -> assertEquals(1, itemRepository.count()),
+                // las plantillas de log_template vienen del script y coinciden con AuditEvent
+                () -> assertEquals(AuditEvent.values().length,
+                        jdbcTemplate.queryForObject("select count(*) from log_template", Integer.class)),
+                () -> assertEquals("adding item with name Item1", logRepository.findAll().get(0).getMessage()),
+                // la restricción única viene del script, no de hbm2ddl
+                () -> assertThrows(DataIntegrityViolationException.class,
+                        () -> itemRepository.saveAndFlush(new Item("Item1")))
+        );
+    }
+
+    /**
+     * V4, el paso de contracción de V2, sobre una base propia: los logs de la versión anterior, con sólo
+     * message, pasan a parameters como texto libre, uno sin mensaje sigue en null, y la columna desaparece.
+     */
+    @Test
+    public void contractLogMessage() {
+        DriverManagerDataSource contracted = new DriverManagerDataSource("jdbc:h2:mem:log_contract;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(contracted).target("3").load().migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(contracted);
+        jdbcTemplate.update("insert into log (id, message, date) values (1, 'written before V2', current_date)");
+        jdbcTemplate.update("insert into log (id, message, date) values (2, null, current_date)");
+        jdbcTemplate.update("insert into log (id, event, parameters, message, date) values (3, 1, 'Item1', 'adding item with name Item1', current_date)");
+
+        Flyway.configure().dataSource(contracted).load().migrate();
+        assertAll(
+                () -> assertEquals(Arrays.asList("written before V2", null, "Item1"),
+                        jdbcTemplate.queryForList("select parameters from log order by id", String.class)),
+                () -> assertEquals(List.of(0, 0, 1), jdbcTemplate.queryForList("select event from log order by id", Integer.class)),
+                () -> assertEquals(0, jdbcTemplate.queryForObject(
+                        "select count(*) from information_schema.columns where table_name = 'LOG' and column_name = 'MESSAGE'",
+                        Integer.class))
+        );
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.demo.configuration.*;
+import com.example.demo.repositories.ItemRepository;
+
+/**
+ * Time from a cold JVM to a refreshed SpringDataConfiguration context, and to the end of the first addItem(),
+ * with the schema recreated by hbm2ddl and with it migrated by Flyway and validated by Hibernate. Every start
+ * runs in a JVM of its own, as a deploy would, on the schema the previous one left: the first start, which
+ * also creates it, is not counted.
+ *
+ * Not part of the regular build, run with: mvn test -Pbenchmark -Dtest=StartupBenchmark
+ */
+public class StartupBenchmark {
+
+    private static final int STARTS = 5;
+    private static final String SCHEMA = "startup";
+    private static final String URL = "jdbc:postgresql://localhost:5432/spring_practice?currentSchema=" + SCHEMA;
+
+    @Test
+    public void coldStart() throws Exception {
+        run("hbm2ddl create", "-Dschema.migrations=false");
+        run("flyway + validate", "-Dschema.migrations=true");
+    }
+
+    private static void run(String label, String... properties) throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:postgresql://localhost:5432/spring_practice", "peter", ""));
+        jdbcTemplate.execute("drop schema if exists " + SCHEMA + " cascade");
+        jdbcTemplate.execute("create schema " + SCHEMA);
+        start(label, properties);
+
+        long[] refresh = new long[STARTS];
+        long[] firstAddItem = new long[STARTS];
+        for (int i = 0; i < STARTS; i++) {
+            jdbcTemplate.execute("truncate table " + SCHEMA + ".item, " + SCHEMA + ".log");
+            long[] millis = start(label, properties);
+            refresh[i] = millis[0];
+            firstAddItem[i] = millis[1];
+        }
+        Arrays.sort(refresh);
+        Arrays.sort(firstAddItem);
+        System.out.println(label + ": context " + refresh[STARTS / 2] + "ms, first addItem done at "
+                + firstAddItem[STARTS / 2] + "ms (median of " + STARTS + " JVMs, from JVM start)");
+    }
+
+    private static long[] start(String label, String... properties) throws Exception {
+        long[] millis = new long[2];
+        List<String> command = new ArrayList<>(List.of(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                "-Ddatasource.url=" + URL, "-Dlog.partitioning=false"));
+        command.addAll(Arrays.asList(properties));
+        command.add(StartupBenchmark.class.getName());
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith("startup ")) {
+                    String[] fields = line.split(" ");
+                    millis[0] = Long.parseLong(fields[1]);
+                    millis[1] = Long.parseLong(fields[2]);
+                }
+            }
+        }
+        if (process.waitFor() != 0 || millis[0] == 0) {
+            throw new IllegalStateException(label + ": start failed");
+        }
+        return millis;
+    }
+
+    /**
+     * One start, in the forked JVM.
+     */
+    public static void main(String[] args) {
+        long jvmStart = java.lang.management.ManagementFactory.getRuntimeMXBean().getStartTime();
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SpringDataConfiguration.class)) {
+            long refreshed = System.currentTimeMillis();
+            context.getBean(ItemRepository.class).addItem("first", LocalDate.now());
+            long added = System.currentTimeMillis();
+            System.out.println("startup " + (refreshed - jvmStart) + " " + (added - jvmStart));
+        }
+    }
+}
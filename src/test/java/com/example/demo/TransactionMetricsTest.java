@@ -0,0 +1,124 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.configuration.*;
+import com.example.demo.exceptions.DuplicateItemNameException;
+import com.example.demo.models.Item;
+import com.example.demo.repositories.ItemRepository;
+import com.example.demo.repositories.LogRepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {SpringDataConfiguration.class})
+public class TransactionMetricsTest {
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private LogRepository logRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void clean() {
+        itemRepository.truncate();
+        logRepository.truncate();
+    }
+
+    /**
+     * addItem() abre una transacción REQUIRED, y el log se escribe en otra REQUIRES_NEW que suspende la primera.
+     * Cada una queda registrada con su propagación, su método, su resultado y las sentencias que ejecutó.
+     */
+    @Test
+    public void addItemMetrics() {
+        long commits = count("REQUIRED", "ItemRepository.addItem", "commit");
+        long logs = count("REQUIRES_NEW", "LogRepository.log", "commit");
+        double suspended = meterRegistry.get("transactions.suspended").counter().count();
+        long statements = statements("REQUIRED", "ItemRepository.addItem");
+
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+
+        assertEquals(commits + 1, count("REQUIRED", "ItemRepository.addItem", "commit"));
+        assertEquals(logs + 1, count("REQUIRES_NEW", "LogRepository.log", "commit"));
+        assertEquals(suspended + 1, meterRegistry.get("transactions.suspended").counter().count());
+        // the duplicate check and the insert, the log goes to the REQUIRES_NEW transaction
+        assertTrue(statements("REQUIRED", "ItemRepository.addItem") >= statements + 2);
+        assertTrue(meterRegistry.get("hikaricp.connections.acquire").timer().count() > 0);
+        assertTrue(meterRegistry.get("hibernate.sessions.open").functionCounter().count() > 0);
+    }
+
+    /**
+     * Un nombre repetido hace que la transacción de addItem() termine en rollback, mientras que la del log
+     * sigue haciendo commit.
+     */
+    @Test
+    public void duplicateRollbackMetrics() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        long rollbacks = count("REQUIRED", "ItemRepository.addItem", "rollback");
+        long logs = count("REQUIRES_NEW", "LogRepository.log", "commit");
+
+        assertThrows(DuplicateItemNameException.class,
+                () -> itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1)));
+
+        assertEquals(rollbacks + 1, count("REQUIRED", "ItemRepository.addItem", "rollback"));
+        assertEquals(logs + 1, count("REQUIRES_NEW", "LogRepository.log", "commit"));
+    }
+
+    /**
+     * Un commit que falla no cuenta como commit: acá el insert del duplicado recién sale en el flush del commit,
+     * que choca con el índice único.
+     */
+    @Test
+    public void commitFailedMetrics() {
+        itemRepository.addItem("Item1", LocalDate.of(2022, 1, 1));
+        long commits = count("REQUIRED", "commitFails", "commit");
+        long failed = count("REQUIRED", "commitFails", "commit_failed");
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setName("commitFails");
+        assertThrows(DataIntegrityViolationException.class, () -> transactionTemplate.executeWithoutResult(
+                status -> entityManager.persist(new Item("Item1", LocalDate.of(2022, 1, 1)))));
+
+        assertEquals(commits, count("REQUIRED", "commitFails", "commit"));
+        assertEquals(failed + 1, count("REQUIRED", "commitFails", "commit_failed"));
+    }
+
+    private long count(String propagation, String method, String outcome) {
+        Timer timer = meterRegistry.find("transactions")
+                .tags("propagation", propagation, "method", method, "outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private long statements(String propagation, String method) {
+        DistributionSummary summary = meterRegistry.find("transactions.statements")
+                .tags("propagation", propagation, "method", method).summary();
+        return summary == null ? 0 : (long) summary.totalAmount();
+    }
+}
@@ -32,8 +32,8 @@ public class TransactionPropagationTest {
 
     @BeforeEach    // each TEST
     public void clean() {
-        itemRepository.deleteAll();
-        logRepository.deleteAll();
+        itemRepository.truncate();
+        logRepository.truncate();
     }
     
     @Test
@@ -0,0 +1,75 @@
+package com.example.demo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.audit.AsyncLogWriter;
+import com.example.demo.configuration.*;
+import com.example.demo.repositories.ItemRepository;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Thousands of concurrent addItem() calls, first on a pool of platform threads and then on one
+ * virtual thread per call. The audit log goes through the AsyncLogWriter, so each call needs a
+ * single connection and the pool of maximum-size connections bounds the real concurrency.
+ *
+ * Needs Java 21, and is skipped on older ones. Not part of the regular build, run with:
+ * mvn test -Pjdk21 -Djdk21.home=<a Java 21 installation>
+ * or, when Maven itself runs on Java 21: mvn test -Pbenchmark -Dtest=VirtualThreadBenchmark
+ */
+public class VirtualThreadBenchmark {
+
+    private static final int CALLS = 5_000;
+    private static final int PLATFORM_THREADS = 200;
+
+    @Test
+    public void platformVersusVirtualThreads() {
+        System.out.println("Java " + Runtime.version() + ", " + Runtime.getRuntime().availableProcessors() + " processors");
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21, see the jdk21 profile");
+
+        ExecutorService platform = Executors.newFixedThreadPool(PLATFORM_THREADS);
+        run("platform x" + PLATFORM_THREADS, platform);
+        platform.shutdown();
+
+        run("virtual", new VirtualThreadTaskExecutor("add-item-"));
+    }
+
+    private static void run(String name, Executor executor) {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AsyncAuditConfiguration.class)) {
+            ItemRepository itemRepository = context.getBean(ItemRepository.class);
+            new JdbcTemplate(context.getBean(DataSource.class)).execute("truncate table item, log");
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+            System.gc();
+            long heapBefore = usedHeap();
+
+            long start = System.nanoTime();
+            CompletableFuture.allOf(IntStream.range(0, CALLS)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> itemRepository.addItem(name + "-" + i, LocalDate.now()), executor))
+                    .toArray(CompletableFuture[]::new)).join();
+            long nanos = System.nanoTime() - start;
+
+            System.out.println(name + ": " + CALLS + " addItem calls, " + (long) (CALLS / (nanos / 1e9)) + " calls/s, peak "
+                    + threads.getPeakThreadCount() + " platform threads, heap +" + (usedHeap() - heapBefore) / 1024 / 1024 + "MB");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
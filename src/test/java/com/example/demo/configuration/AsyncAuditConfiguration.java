@@ -0,0 +1,28 @@
+package com.example.demo.configuration;
+
+import java.time.Duration;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.audit.AsyncLogWriter;
+import com.example.demo.audit.BackpressurePolicy;
+import com.example.demo.repositories.LogRepository;
+
+/**
+ * SpringDataConfiguration with the audit logs going through an AsyncLogWriter, for the tests and benchmarks
+ * that run many threads at once: with the REQUIRES_NEW of LogRepository.log() each of them would hold two
+ * connections of the pool. Left out of the component scan of CatalinTransactions2Application like
+ * SpringDataConfiguration.
+ */
+@TestConfiguration
+@Import(SpringDataConfiguration.class)
+public class AsyncAuditConfiguration {
+
+    @Bean
+    public AsyncLogWriter asyncLogWriter(LogRepository logRepository, PlatformTransactionManager transactionManager) {
+        return new AsyncLogWriter(logRepository, transactionManager, 10_000, 50, Duration.ofMillis(20), BackpressurePolicy.BLOCK);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.example.demo.reactive.ReactiveItemRepository;
+import com.example.demo.reactive.ReactiveLogRepository;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+
+/**
+ * The R2DBC side of the database of SpringDataConfiguration. It creates no tables, import it next to
+ * SpringDataConfiguration so that hbm2ddl has created them. Left out of the component scan of
+ * CatalinTransactions2Application like SpringDataConfiguration.
+ */
+@TestConfiguration
+public class ReactiveDataConfiguration {
+
+    @Value("${r2dbc.url:r2dbc:postgresql://localhost:5432/spring_practice}")
+    private String url;
+
+    @Value("${datasource.username:peter}")
+    private String username;
+
+    @Value("${datasource.password:}")
+    private String password;
+
+    @Value("${r2dbc.pool.maximum-size:10}")
+    private int maximumPoolSize;
+
+    /**
+     * Connections are opened on first use, a context that never uses them never connects.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory() {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username);
+        if (!password.isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("spring-practice-r2dbc")
+                .initialSize(0)
+                .maxSize(maximumPoolSize)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient() {
+        return DatabaseClient.create(connectionFactory());
+    }
+
+    // not called transactionManager, that one stays the JPA one of the repositories
+    @Bean
+    public R2dbcTransactionManager reactiveTransactionManager() {
+        return new R2dbcTransactionManager(connectionFactory());
+    }
+
+    @Bean
+    public ReactiveLogRepository reactiveLogRepository() {
+        return new ReactiveLogRepository(databaseClient(), reactiveTransactionManager());
+    }
+
+    @Bean
+    public ReactiveItemRepository reactiveItemRepository() {
+        return new ReactiveItemRepository(databaseClient(), reactiveTransactionManager(), reactiveLogRepository());
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.configuration;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+
+/**
+ * Tests of PostgreSQL features (advisory locks, partitions, R2DBC) that the H2 of the embedded profile lacks.
+ * They are skipped when datasource.database names another database.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@DisabledIfSystemProperty(named = "datasource.database", matches = "(?!POSTGRESQL$).*",
+        disabledReason = "needs PostgreSQL")
+public @interface RequiresPostgreSQL {
+}
@@ -0,0 +1,25 @@
+package com.example.demo.configuration;
+
+import org.springframework.beans.factory.InitializingBean;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Empties the second-level cache when the context starts. hbm2ddl recreates the schema for every
+ * context, but the Caffeine cache manager is shared by the whole JVM, so the regions may still hold the
+ * rows an earlier context cached. SpringDataConfiguration makes the transaction manager depend on it, so
+ * no transaction reads from the cache before it is emptied.
+ */
+public class SecondLevelCacheReset implements InitializingBean {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SecondLevelCacheReset(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        entityManagerFactory.getCache().evictAll();
+    }
+}
@@ -1,45 +1,263 @@
 package com.example.demo.configuration;
 
+import java.time.Duration;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.HibernateMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.JpaVendorAdapter;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.Database;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 
+import com.example.demo.CatalinTransactions2Application;
+import com.example.demo.audit.LogPartitionManager;
+import com.example.demo.audit.LogTemplates;
+import com.example.demo.ids.PooledSequenceGenerator;
+import com.example.demo.metrics.MeteredJpaTransactionManager;
+import com.example.demo.metrics.TransactionMetrics;
+import com.example.demo.routing.ReadOnlyRoutingDataSource;
+import com.example.demo.savepoints.SavepointHibernateJpaDialect;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import jakarta.persistence.EntityManagerFactory;
 
-@Configuration
+// a test configuration, so the component scan of CatalinTransactions2Application leaves it out: a
+// @SpringBootTest context runs on the database Boot configures, without a second hbm2ddl and cache
+// manager on the one of the other contexts
+@TestConfiguration
 @EnableJpaRepositories("com.example.demo.repositories")
 public class SpringDataConfiguration {
 
+    // every value can be overridden with a system property or environment variable of the same name
+    @Value("${datasource.driver-class-name:org.postgresql.Driver}")
+    private String driverClassName;
+
+    @Value("${datasource.url:jdbc:postgresql://localhost:5432/spring_practice}")
+    protected String url;
+
+    @Value("${datasource.database:POSTGRESQL}")
+    private Database database;
+
+    // read-only transactions go to this database when it is set
+    @Value("${datasource.replica.url:}")
+    protected String replicaUrl;
+
+    // a read waits this long for a replica that is down, before it goes to the primary
+    @Value("${datasource.replica.connection-timeout-ms:1000}")
+    private long replicaConnectionTimeout;
+
+    // and the reads go straight to the primary for this long after that
+    @Value("${datasource.replica.retry-interval-ms:10000}")
+    private long replicaRetryInterval;
+
+    @Value("${datasource.username:peter}")
+    protected String username;
+
+    @Value("${datasource.password:}")
+    protected String password;
+
+    @Value("${datasource.pool.maximum-size:10}")
+    private int maximumPoolSize;
+
+    @Value("${datasource.pool.connection-timeout-ms:30000}")
+    private long connectionTimeout;
+
+    @Value("${datasource.pool.leak-detection-threshold-ms:0}")
+    private long leakDetectionThreshold;
+
+    @Value("${datasource.prepare-threshold:5}")
+    private int prepareThreshold;
+
+    @Value("${datasource.prepared-statement-cache-queries:256}")
+    private int preparedStatementCacheQueries;
+
+    // ids reserved per sequence call, must match the increment of the sequences when they come from Flyway
+    @Value("${id.allocation-size:" + PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE + "}")
+    private int idAllocationSize;
+
+    @Value("${hibernate.second-level-cache:true}")
+    private boolean secondLevelCache;
+
+    @Value("${hibernate.show-sql:false}")
+    private boolean showSql;
+
+    // production: the schema comes from the Flyway scripts in db/migration, Hibernate only validates it
+    @Value("${schema.migrations:false}")
+    private boolean schemaMigrations;
+
+    @Value("${hibernate.statistics:true}")
+    private boolean statistics;
+
+    @Value("${metrics.enabled:true}")
+    private boolean metrics;
+
+    private static final AtomicInteger pools = new AtomicInteger();
+
+    // the pool names of this context, see dataSource()
+    private final int poolNumber = pools.incrementAndGet();
+
+    @Value("${log.partitioning:true}")
+    private boolean logPartitioning;
+
+    @Value("${log.partitions-ahead:3}")
+    private int logPartitionsAhead;
+
+    // 0 keeps every log
+    @Value("${log.retention-months:0}")
+    private int logRetentionMonths;
+
+    /**
+     * Transaction, connection pool and Hibernate meters, replacing show-sql as the way to see which
+     * repository paths cost the most. With metrics.enabled=false nothing is registered or recorded.
+     */
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    public TransactionMetrics transactionMetrics() {
+        return new TransactionMetrics(meterRegistry(), new SqlStatementCounter());
+    }
+
+    /**
+     * Pooled connections: a DriverManagerDataSource opened a new physical connection for every
+     * transaction, including each REQUIRES_NEW of LogRepository.log(). The pool statistics are
+     * published over JMX (com.zaxxer.hikari:type=Pool (spring-practice-1)). The pools of every context
+     * get their own number: Hikari registers no MBean for a second pool of the same name.
+     *
+     * With datasource.replica.url the read-only transactions borrow from a second pool
+     * (spring-practice-replica-1), and fall back to the primary when the replica is down.
+     */
 	@Bean
     public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName("org.postgresql.Driver");
-        dataSource.setUrl("jdbc:postgresql://localhost:5432/spring_practice");
-        dataSource.setUsername("peter");
-        dataSource.setPassword("");
-        return dataSource;
+        DataSource primary = new HikariDataSource(poolConfig("spring-practice-" + poolNumber, url));
+        if (replicaUrl.isEmpty()) {
+            return primary;
+        }
+        HikariConfig replicaConfig = poolConfig("spring-practice-replica-" + poolNumber, replicaUrl);
+        // start even when the replica is down, its reads will go to the primary
+        replicaConfig.setInitializationFailTimeout(-1);
+        replicaConfig.setConnectionTimeout(replicaConnectionTimeout);
+        ReadOnlyRoutingDataSource routing = new ReadOnlyRoutingDataSource(primary, new HikariDataSource(replicaConfig));
+        routing.setReplicaRetryInterval(Duration.ofMillis(replicaRetryInterval));
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private HikariConfig poolConfig(String poolName, String jdbcUrl) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setDriverClassName(driverClassName);
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setConnectionTimeout(connectionTimeout);
+        config.setLeakDetectionThreshold(leakDetectionThreshold);
+        config.setRegisterMbeans(true);
+        if (metrics) {
+            // hikaricp.connections.acquire times how long a transaction waits for its connection
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry()));
+        }
+        if (database == Database.POSTGRESQL) {
+            // server-side prepared statements, cached per connection by the PostgreSQL driver
+            config.addDataSourceProperty("prepareThreshold", prepareThreshold);
+            config.addDataSourceProperty("preparedStatementCacheQueries", preparedStatementCacheQueries);
+        }
+        return config;
+    }
+
+    @Bean
+    public SecondLevelCacheReset secondLevelCacheReset(EntityManagerFactory emf) {
+        return new SecondLevelCacheReset(emf);
     }
 
     @Bean
+    @DependsOn("secondLevelCacheReset")
     public JpaTransactionManager transactionManager(EntityManagerFactory emf) {
-        return new JpaTransactionManager(emf);
+        JpaTransactionManager transactionManager;
+        if (metrics) {
+            if (statistics) {
+                new HibernateMetrics(emf.unwrap(SessionFactory.class), "spring-practice", Tags.empty())
+                        .bindTo(meterRegistry());
+            }
+            transactionManager = new MeteredJpaTransactionManager(emf, transactionMetrics());
+        } else {
+            transactionManager = new JpaTransactionManager(emf);
+        }
+        // NESTED propagation as JDBC savepoints on the connection of the outer transaction
+        transactionManager.setNestedTransactionAllowed(true);
+        return transactionManager;
+    }
+
+    /**
+     * Depends on the EntityManagerFactory so that hbm2ddl has created the Log table before it is partitioned.
+     */
+    @Bean
+    public LogPartitionManager logPartitionManager(EntityManagerFactory emf) {
+        LogPartitionManager logPartitionManager =
+                new LogPartitionManager(dataSource(), logPartitionsAhead, logRetentionMonths);
+        logPartitionManager.setPartitioning(logPartitioning);
+        return logPartitionManager;
+    }
+
+    /**
+     * Depends on the EntityManagerFactory for the same reason, hbm2ddl creates the log_template table.
+     */
+    @Bean
+    public LogTemplates logTemplates(EntityManagerFactory emf) {
+        LogTemplates logTemplates = new LogTemplates(dataSource());
+        // with migrations the templates come from the scripts too
+        logTemplates.setValidateOnly(schemaMigrations);
+        return logTemplates;
+    }
+
+    /**
+     * With schema.migrations the schema comes from the Flyway scripts, and hbm2ddl only validates it.
+     */
+    @Bean(initMethod = "migrate")
+    @ConditionalOnProperty(name = "schema.migrations", havingValue = "true")
+    public Flyway flyway() {
+        // a database created by hbm2ddl before the migrations existed is taken as version 1; the target is
+        // the one of the production profile
+        return Flyway.configure().dataSource(dataSource()).baselineOnMigrate(true).baselineVersion("1")
+                .target("3").load();
+    }
+
+    /**
+     * Makes the EntityManagerFactory depend on the Flyway bean when there is one, as Boot does, so the schema
+     * is migrated before it is validated.
+     */
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor entityManagerFactoryDependsOnFlyway() {
+        return new EntityManagerFactoryDependsOnPostProcessor(Flyway.class);
     }
 
     @Bean
     public JpaVendorAdapter jpaVendorAdapter() {
         HibernateJpaVendorAdapter jpaVendorAdapter = new HibernateJpaVendorAdapter();
-        jpaVendorAdapter.setDatabase(Database.POSTGRESQL);
-        jpaVendorAdapter.setShowSql(true);
+        jpaVendorAdapter.setDatabase(database);
+        jpaVendorAdapter.setShowSql(showSql);
         return jpaVendorAdapter;
     }
 
@@ -49,10 +267,31 @@ public class SpringDataConfiguration {
                 new LocalContainerEntityManagerFactoryBean();
         localContainerEntityManagerFactoryBean.setDataSource(dataSource());
         Properties properties = new Properties();
-        properties.put("hibernate.hbm2ddl.auto", "create");
+        properties.put("hibernate.hbm2ddl.auto", schemaMigrations ? "validate" : "create");
+        // group the inserts of ItemRepository.addItems() into JDBC batches
+        properties.put("hibernate.jdbc.batch_size", "50");
+        properties.put("hibernate.order_inserts", "true");
+        properties.put("hibernate.order_updates", "true");
+        // ids come from per-entity sequences, each call reserves a block of id.allocation-size values
+        properties.put("hibernate.id.optimizer.pooled.preferred", "pooled-lo");
+        properties.put(PooledSequenceGenerator.ALLOCATION_SIZE, String.valueOf(idAllocationSize));
+        properties.put("hibernate.session_factory.statement_inspector",
+                metrics ? transactionMetrics() : new SqlStatementCounter());
+        // Item and its natural id are cached in Caffeine, sized and expired by hibernate-cache.conf
+        properties.put("hibernate.cache.use_second_level_cache", String.valueOf(secondLevelCache));
+        properties.put("hibernate.cache.region.factory_class", "jcache");
+        properties.put("hibernate.javax.cache.provider", "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+        properties.put("hibernate.javax.cache.uri", "hibernate-cache.conf");
+        properties.put("hibernate.javax.cache.missing_cache_strategy", "create");
+        // contexts on the same database share the regions, so they see each other's updates
+        properties.put("hibernate.cache.region_prefix", url.replaceAll("\\W", "_"));
+        properties.put("hibernate.generate_statistics", String.valueOf(statistics));
         localContainerEntityManagerFactoryBean.setJpaProperties(properties);
         localContainerEntityManagerFactoryBean.setJpaVendorAdapter(jpaVendorAdapter());
-        localContainerEntityManagerFactoryBean.setPackagesToScan("com.example.demo");
+        // savepoints for NESTED propagation
+        localContainerEntityManagerFactoryBean.setJpaDialect(new SavepointHibernateJpaDialect());
+        // listed rather than scanned for, no classpath scan on start
+        localContainerEntityManagerFactoryBean.setManagedTypes(CatalinTransactions2Application.persistenceManagedTypes());
         return localContainerEntityManagerFactoryBean;
     }
 }
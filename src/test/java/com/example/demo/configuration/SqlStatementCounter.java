@@ -0,0 +1,52 @@
+package com.example.demo.configuration;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares, so tests can check how many round trips an
+ * operation really costs. A JDBC batch is prepared once, so it counts as one statement.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final AtomicLong statements = new AtomicLong();
+    private static final AtomicLong sequenceCalls = new AtomicLong();
+    private static volatile Consumer<String> listener;
+
+    @Override
+    public String inspect(String sql) {
+        Consumer<String> current = listener;
+        if (current != null) {
+            current.accept(sql);
+        }
+        statements.incrementAndGet();
+        // PostgreSQL and H2
+        if (sql.contains("nextval") || sql.contains("next value for")) {
+            sequenceCalls.incrementAndGet();
+        }
+        return sql;
+    }
+
+    public static void reset() {
+        statements.set(0);
+        sequenceCalls.set(0);
+    }
+
+    /**
+     * Called with every statement on the thread that prepares it, before it runs; null to stop. Lets a test
+     * wait for another thread to reach a given statement.
+     */
+    public static void setListener(Consumer<String> listener) {
+        SqlStatementCounter.listener = listener;
+    }
+
+    public static long getStatements() {
+        return statements.get();
+    }
+
+    public static long getSequenceCalls() {
+        return sequenceCalls.get();
+    }
+}
@@ -0,0 +1,27 @@
+#!/bin/sh
+# Runs ItemImportBenchmark with the JVM pinned to 1, 2, 4 and 8 CPUs, or those given as arguments, with as
+# many workers as CPUs and 1 worker for reference. Only the benchmark JVM is limited: the database keeps all
+# the cores of its host, run it on another machine for figures that do not share them.
+# The counts above the CPUs of this machine are skipped. The lines are collected in
+# target/import-scaling.txt.
+#
+# Usage, from the project directory: src/test/scripts/import-scaling.sh [cpus...]
+set -e
+
+[ $# -gt 0 ] || set -- 1 2 4 8
+available=$(nproc)
+report=target/import-scaling.txt
+mkdir -p target
+echo "# $(git rev-parse --short HEAD 2>/dev/null || echo unknown), $available CPUs available" >> "$report"
+
+for cpus in "$@"; do
+    if [ "$cpus" -gt "$available" ]; then
+        echo "skipping $cpus CPUs, only $available available" | tee -a "$report"
+        continue
+    fi
+    workers=$( [ "$cpus" -eq 1 ] && echo 1 || echo "1,$cpus" )
+    # the forked test JVM inherits the affinity, and sizes its pools from it
+    taskset -c 0-$((cpus - 1)) mvn -B -q test -Pbenchmark -Dtest=ItemImportBenchmark \
+        -Dimport.workers="$workers" -Dsurefire.printSummary=false 2>/dev/null \
+        | grep -E "processors|items/s" | sed "s/^/$cpus CPUs: /" | tee -a "$report"
+done